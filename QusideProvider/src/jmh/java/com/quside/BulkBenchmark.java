@@ -0,0 +1,61 @@
+package com.quside;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * BulkGenerator filling a 64 MiB array, on one core and on all of them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BulkBenchmark
+{
+    @Param({"QRNG", "QRNG-CTR"})
+    String algorithm;
+
+    // 0 for one thread per processor
+    @Param({"1", "0"})
+    int parallelism;
+
+    private ForkJoinPool pool;
+    private BulkGenerator generator;
+    private byte[] output;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        pool = new ForkJoinPool(parallelism == 0 ? Runtime.getRuntime().availableProcessors() : parallelism);
+        generator = new BulkGenerator(algorithm, pool);
+        output = new byte[64 * 1024 * 1024];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public BulkStatistics fill()
+    {
+        return generator.fill(output);
+    }
+}
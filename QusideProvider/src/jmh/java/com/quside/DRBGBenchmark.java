@@ -0,0 +1,74 @@
+package com.quside;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Hash_DRBG, HMAC_DRBG and CTR_DRBG generate, and hash_df, seeded from the configured QRNG device.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class DRBGBenchmark
+{
+    // a single request is limited to 2^18 bits
+    @Param({"16", "256", "4096", "32768"})
+    int size;
+
+    @Param({"HASH_SHA512", "HASH_SHA256", "HASH_SHA384", "HASH_SHA512_256", "HMAC_SHA512", "CTR_AES256"})
+    DRBGMechanism mechanism;
+
+    private SP80090DRBG drbg;
+    private byte[] output;
+    private byte[] seedMaterial;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        // constructed the same way as QusideQrngSpi
+        QusideEntropySource entropySource = new QusideEntropySource();
+        byte[] nonce = new byte[entropySource.entropySize() / 8];
+        entropySource.getRandomBytes(nonce);
+
+        drbg = mechanism.create(entropySource, entropySource.entropySize(), new byte[0], nonce);
+        output = new byte[size];
+        seedMaterial = new byte[size];
+        entropySource.getRandomBytes(seedMaterial);
+    }
+
+    @Benchmark
+    public byte[] generate()
+    {
+        drbg.generate(output, null, false);
+        return output;
+    }
+
+    @Benchmark
+    public byte[] generatePredictionResistant()
+    {
+        drbg.generate(output, null, true);
+        return output;
+    }
+
+    @Benchmark
+    public byte[] hashDf()
+    {
+        // 888 bits, the seed length used with SHA-512
+        return DRBGUtils.hash_df(new SHA512Digest(), seedMaterial, 888);
+    }
+}
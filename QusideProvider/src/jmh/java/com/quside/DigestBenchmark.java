@@ -0,0 +1,178 @@
+package com.quside;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * SHA-512 and HMAC-SHA512 throughput over a range of message sizes.
+ * <p>
+ * "jdkSha512" is the JDK's own MessageDigest for reference, which on recent JDKs runs an intrinsic
+ * of the compression function. "sha512Unaligned" feeds the message from an odd offset, one byte
+ * into a word, so whole blocks never line up with the start of the input.
+ * </p>
+ * <p>
+ * The "NoMidstate" HMAC runs over a digest that is not Memoable, so every MAC hashes the ipad and
+ * opad blocks again, as HMac did before it cached their states.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class DigestBenchmark
+{
+    @Param({"16", "64", "1024", "16384", "1048576"})
+    int size;
+
+    private byte[] message;
+    private final byte[] out = new byte[64];
+    private final SHA512Digest digest = new SHA512Digest();
+    private MessageDigest jdkDigest;
+    private final HMac hmac = new HMac(new SHA512Digest());
+    private final HMac hmacNoMidstate = new HMac(new PlainDigest(new SHA512Digest()));
+    private final KeyParameter key = new KeyParameter(new byte[64]);
+
+    @Setup(Level.Trial)
+    public void setup()
+        throws NoSuchAlgorithmException
+    {
+        message = new byte[size + 1];
+        for (int i = 0; i != message.length; i++)
+        {
+            message[i] = (byte)i;
+        }
+        jdkDigest = MessageDigest.getInstance("SHA-512");
+
+        byte[] k = key.getKey();
+        for (int i = 0; i != k.length; i++)
+        {
+            k[i] = (byte)(0xA5 ^ i);
+        }
+        hmac.init(key);
+        hmacNoMidstate.init(key);
+    }
+
+    @Benchmark
+    public byte[] sha512()
+    {
+        digest.update(message, 0, size);
+        digest.doFinal(out, 0);
+        return out;
+    }
+
+    @Benchmark
+    public byte[] sha512Unaligned()
+    {
+        digest.update(message[0]);
+        digest.update(message, 1, size);
+        digest.doFinal(out, 0);
+        return out;
+    }
+
+    @Benchmark
+    public byte[] jdkSha512()
+    {
+        jdkDigest.update(message, 0, size);
+        return jdkDigest.digest();
+    }
+
+    @Benchmark
+    public byte[] hmacSha512()
+    {
+        hmac.update(message, 0, size);
+        hmac.doFinal(out, 0);
+        return out;
+    }
+
+    @Benchmark
+    public byte[] hmacSha512NoMidstate()
+    {
+        hmacNoMidstate.update(message, 0, size);
+        hmacNoMidstate.doFinal(out, 0);
+        return out;
+    }
+
+    // init and one MAC, as HMAC_DRBG does on every update of its key
+    @Benchmark
+    public byte[] hmacSha512Rekey()
+    {
+        hmac.init(key);
+        hmac.update(message, 0, size);
+        hmac.doFinal(out, 0);
+        return out;
+    }
+
+    @Benchmark
+    public byte[] hmacSha512RekeyNoMidstate()
+    {
+        hmacNoMidstate.init(key);
+        hmacNoMidstate.update(message, 0, size);
+        hmacNoMidstate.doFinal(out, 0);
+        return out;
+    }
+
+    /**
+     * Hides the Memoable support of the wrapped digest.
+     */
+    private static class PlainDigest
+        implements Digest
+    {
+        private final Digest digest;
+
+        PlainDigest(Digest digest)
+        {
+            this.digest = digest;
+        }
+
+        public String getAlgorithmName()
+        {
+            return digest.getAlgorithmName();
+        }
+
+        public int getDigestSize()
+        {
+            return digest.getDigestSize();
+        }
+
+        public void update(byte in)
+        {
+            digest.update(in);
+        }
+
+        public void update(byte[] in, int inOff, int len)
+        {
+            digest.update(in, inOff, len);
+        }
+
+        public int doFinal(byte[] out, int outOff)
+        {
+            return digest.doFinal(out, outOff);
+        }
+
+        public void reset()
+        {
+            digest.reset();
+        }
+
+        public int getByteLength()
+        {
+            return digest.getByteLength();
+        }
+    }
+}
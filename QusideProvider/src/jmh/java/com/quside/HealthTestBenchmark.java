@@ -0,0 +1,80 @@
+package com.quside;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of the SP 800-90B continuous health tests per read, on data that passes them.
+ * <p>
+ * "bytes" tests an array as filled by getRandomBytes, "words" a harvester fetch of int words
+ * and "directBuffer" a direct buffer as filled by getRandomBuffer. Divide the size by the time
+ * per operation for the per-byte cost, to set against the board's transfer rate.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class HealthTestBenchmark
+{
+    @Param({"512", "65536", "1048576"})
+    int size;
+
+    private final HealthTests tests = new HealthTests(0.98);
+    private byte[] bytes;
+    private int[] words;
+    private ByteBuffer buffer;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        Random rnd = new Random(1);
+
+        bytes = new byte[size];
+        rnd.nextBytes(bytes);
+
+        words = new int[size / 4];
+        for (int i = 0; i != words.length; i++)
+        {
+            words[i] = rnd.nextInt();
+        }
+
+        buffer = ByteBuffer.allocateDirect(size);
+        buffer.put(bytes, 0, size);
+        buffer.clear();
+    }
+
+    @Benchmark
+    public boolean bytes()
+    {
+        return tests.test(bytes, 0, size);
+    }
+
+    @Benchmark
+    public boolean words()
+    {
+        return tests.test(words, words.length);
+    }
+
+    @Benchmark
+    public boolean directBuffer()
+    {
+        return tests.test(buffer, 0, size);
+    }
+}
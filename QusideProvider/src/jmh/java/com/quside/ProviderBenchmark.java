@@ -0,0 +1,182 @@
+package com.quside;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
+import java.security.Provider;
+import java.security.SecureRandom;
+import java.security.Security;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of obtaining the Quside SecureRandom instances and of nextBytes through the JCA.
+ * <p>
+ * The multi-threaded nextBytes variants share one SecureRandom per algorithm between all benchmark
+ * threads. The "Contended" variants look up the provider's services from 32 threads.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProviderBenchmark
+{
+    static void installProvider()
+    {
+        if (Security.getProvider(QusideProvider.NAME) == null)
+        {
+            Security.addProvider(new QusideProvider());
+        }
+    }
+
+    @Benchmark
+    public SecureRandom getInstanceQES()
+        throws NoSuchAlgorithmException, NoSuchProviderException
+    {
+        return SecureRandom.getInstance("QES", QusideProvider.NAME);
+    }
+
+    @Benchmark
+    public SecureRandom getInstanceQRNG()
+        throws NoSuchAlgorithmException, NoSuchProviderException
+    {
+        return SecureRandom.getInstance("QRNG", QusideProvider.NAME);
+    }
+
+    // getInstance from many threads at once, as a request path creating a SecureRandom per call does
+    @Benchmark
+    @Threads(32)
+    public SecureRandom getInstanceQRNGContended()
+        throws NoSuchAlgorithmException, NoSuchProviderException
+    {
+        return SecureRandom.getInstance("QRNG", QusideProvider.NAME);
+    }
+
+    @Benchmark
+    @Threads(32)
+    public SecureRandom getInstanceQESContended()
+        throws NoSuchAlgorithmException, NoSuchProviderException
+    {
+        return SecureRandom.getInstance("QES", QusideProvider.NAME);
+    }
+
+    // the provider lookup alone, without creating the SPI
+    @Benchmark
+    @Threads(32)
+    public Provider.Service getServiceContended()
+    {
+        return Security.getProvider(QusideProvider.NAME).getService("SecureRandom", "QRNG");
+    }
+
+    @State(Scope.Benchmark)
+    public static class QesState
+    {
+        @Param({"16", "256", "4096", "65536", "1048576"})
+        int size;
+
+        SecureRandom random;
+
+        @Setup(Level.Trial)
+        public void setup()
+            throws NoSuchAlgorithmException, NoSuchProviderException
+        {
+            installProvider();
+            random = SecureRandom.getInstance("QES", QusideProvider.NAME);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class QrngState
+    {
+        // a single Hash_DRBG request is limited to 2^18 bits
+        @Param({"16", "256", "4096", "32768"})
+        int size;
+
+        SecureRandom random;
+
+        @Setup(Level.Trial)
+        public void setup()
+            throws NoSuchAlgorithmException, NoSuchProviderException
+        {
+            installProvider();
+            random = SecureRandom.getInstance("QRNG", QusideProvider.NAME);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class QesOutput
+    {
+        byte[] bytes;
+
+        @Setup(Level.Trial)
+        public void setup(QesState state)
+        {
+            bytes = new byte[state.size];
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class QrngOutput
+    {
+        byte[] bytes;
+
+        @Setup(Level.Trial)
+        public void setup(QrngState state)
+        {
+            bytes = new byte[state.size];
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        installProvider();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public byte[] qesNextBytes(QesState state, QesOutput out)
+    {
+        state.random.nextBytes(out.bytes);
+        return out.bytes;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public byte[] qesNextBytesMultiThreaded(QesState state, QesOutput out)
+    {
+        state.random.nextBytes(out.bytes);
+        return out.bytes;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public byte[] qrngNextBytes(QrngState state, QrngOutput out)
+    {
+        state.random.nextBytes(out.bytes);
+        return out.bytes;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public byte[] qrngNextBytesMultiThreaded(QrngState state, QrngOutput out)
+    {
+        state.random.nextBytes(out.bytes);
+        return out.bytes;
+    }
+}
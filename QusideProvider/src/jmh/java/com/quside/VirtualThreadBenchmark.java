@@ -0,0 +1,127 @@
+package com.quside;
+
+import java.lang.reflect.Method;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Carrier thread availability while 10k virtual threads read from the QRNG.
+ * <p>
+ * Each invocation starts 10k virtual threads calling nextBytes and then measures how long
+ * 1000 short, unrelated virtual tasks take to complete. Readers that pin their carriers inside
+ * the device call hold those tasks back, readers whose device calls are offloaded do not.
+ * Needs a Java 21 JVM (-PjmhJvm=...) and a simulated latency (-PjmhLatencyMicros=...), compare
+ * runs with -PjmhOffload=true and -PjmhOffload=false.
+ * </p>
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VirtualThreadBenchmark
+{
+    private static final int READERS = 10000;
+    private static final int PROBES = 1000;
+
+    private ExecutorService virtualThreads;
+    private SecureRandom random;
+    private final List<Future<?>> readers = new ArrayList<Future<?>>(READERS);
+
+    @Setup(Level.Trial)
+    public void setup()
+        throws Exception
+    {
+        Method factory;
+        try
+        {
+            factory = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        }
+        catch (NoSuchMethodException e)
+        {
+            throw new IllegalStateException("VirtualThreadBenchmark requires Java 21 or later");
+        }
+        virtualThreads = (ExecutorService)factory.invoke(null);
+
+        ProviderBenchmark.installProvider();
+        random = SecureRandom.getInstance("QES", QusideProvider.NAME);
+    }
+
+    @TearDown(Level.Invocation)
+    public void awaitReaders()
+        throws InterruptedException, ExecutionException
+    {
+        for (int i = 0; i != readers.size(); i++)
+        {
+            readers.get(i).get();
+        }
+        readers.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        virtualThreads.shutdown();
+    }
+
+    @Benchmark
+    public long probeLatencyUnderLoad()
+        throws InterruptedException, ExecutionException
+    {
+        for (int i = 0; i != READERS; i++)
+        {
+            readers.add(virtualThreads.submit(new Runnable()
+            {
+                public void run()
+                {
+                    random.nextBytes(new byte[32]);
+                }
+            }));
+        }
+
+        List<Future<Long>> probes = new ArrayList<Future<Long>>(PROBES);
+        for (int i = 0; i != PROBES; i++)
+        {
+            final long seed = i;
+            probes.add(virtualThreads.submit(new Callable<Long>()
+            {
+                public Long call()
+                {
+                    long x = seed;
+                    for (int j = 0; j != 1000; j++)
+                    {
+                        x = x * 6364136223846793005L + 1442695040888963407L;
+                    }
+                    return x;
+                }
+            }));
+        }
+
+        long acc = 0;
+        for (int i = 0; i != PROBES; i++)
+        {
+            acc ^= probes.get(i).get();
+        }
+        return acc;
+    }
+}
@@ -0,0 +1,34 @@
+package com.quside;
+
+/**
+ * Big endian word reads for the digest block paths, Java 8 version.
+ * <p>
+ * The Java 21 layer of the jar replaces this class with one reading each word through a byte
+ * array view VarHandle, a single load on HotSpot.
+ * </p>
+ */
+final class BigEndian
+{
+    private BigEndian()
+    {
+    }
+
+    /**
+     * Read 8 bytes as a big endian long.
+     *
+     * @param bs  the source array.
+     * @param off offset of the most significant byte.
+     * @return the word.
+     */
+    static long getLong(byte[] bs, int off)
+    {
+        return ((long)bs[off] << 56)
+            | ((bs[off + 1] & 0xffL) << 48)
+            | ((bs[off + 2] & 0xffL) << 40)
+            | ((bs[off + 3] & 0xffL) << 32)
+            | ((bs[off + 4] & 0xffL) << 24)
+            | ((bs[off + 5] & 0xffL) << 16)
+            | ((bs[off + 6] & 0xffL) << 8)
+            | (bs[off + 7] & 0xffL);
+    }
+}
@@ -0,0 +1,139 @@
+package com.quside;
+
+/**
+ * Snapshot of the activity of a single QRNG board.
+ */
+public final class BoardStatistics
+{
+    private final int index;
+    private final CalibrationStatus status;
+    private final long requests;
+    private final long bytes;
+    private final long errors;
+    private final long busyNanos;
+    private final int inFlight;
+    private final long healthFailures;
+    private final boolean healthy;
+
+    BoardStatistics(int index, CalibrationStatus status, long requests, long bytes, long errors, long busyNanos, int inFlight,
+                    long healthFailures, boolean healthy)
+    {
+        this.index = index;
+        this.status = status;
+        this.requests = requests;
+        this.bytes = bytes;
+        this.errors = errors;
+        this.busyNanos = busyNanos;
+        this.inFlight = inFlight;
+        this.healthFailures = healthFailures;
+        this.healthy = healthy;
+    }
+
+    /**
+     * Return the device index of the board.
+     *
+     * @return the index passed to the native library.
+     */
+    public int getIndex()
+    {
+        return index;
+    }
+
+    /**
+     * Return the calibration status of the board when the snapshot was taken.
+     *
+     * @return the cached calibration status.
+     */
+    public CalibrationStatus getCalibrationStatus()
+    {
+        return status;
+    }
+
+    /**
+     * Return the number of reads issued to the board.
+     *
+     * @return the read count.
+     */
+    public long getRequests()
+    {
+        return requests;
+    }
+
+    /**
+     * Return the number of random bytes delivered by the board.
+     *
+     * @return the byte count.
+     */
+    public long getBytes()
+    {
+        return bytes;
+    }
+
+    /**
+     * Return the number of failed reads.
+     *
+     * @return the error count.
+     */
+    public long getErrors()
+    {
+        return errors;
+    }
+
+    /**
+     * Return the total time spent inside device reads.
+     *
+     * @return the busy time in nanoseconds.
+     */
+    public long getBusyNanos()
+    {
+        return busyNanos;
+    }
+
+    /**
+     * Return the number of reads in progress when the snapshot was taken.
+     *
+     * @return the in-flight read count.
+     */
+    public int getInFlight()
+    {
+        return inFlight;
+    }
+
+    /**
+     * Return the number of reads whose output failed the SP 800-90B continuous health tests
+     * and was discarded.
+     *
+     * @return the health test failure count.
+     */
+    public long getHealthFailures()
+    {
+        return healthFailures;
+    }
+
+    /**
+     * Return whether the board was in use when the snapshot was taken, as far as the health
+     * tests are concerned. A board that failed them is out of use until it has been recalibrated.
+     *
+     * @return false while the board is held out after a health test failure.
+     */
+    public boolean isHealthy()
+    {
+        return healthy;
+    }
+
+    /**
+     * Return the throughput of the board while busy.
+     *
+     * @return bytes per second, 0 if the board has not been used.
+     */
+    public double getBytesPerSecond()
+    {
+        return busyNanos == 0 ? 0 : bytes * 1e9 / busyNanos;
+    }
+
+    public String toString()
+    {
+        return "Board[" + index + "]: status=" + status + ", requests=" + requests + ", bytes=" + bytes + ", errors=" + errors
+            + ", inFlight=" + inFlight + ", healthFailures=" + healthFailures + (healthy ? "" : " (held out)") + ", MB/s=" + String.format("%.2f", getBytesPerSecond() / 1e6);
+    }
+}
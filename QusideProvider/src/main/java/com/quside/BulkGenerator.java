@@ -0,0 +1,164 @@
+package com.quside;
+
+import com.quside.util.Properties;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fills large buffers with DRBG output on all cores.
+ * <p>
+ * A fill is cut into chunks of com.quside.bulk.chunkSize bytes (default 4 MiB) which are
+ * generated by fork/join tasks. Every chunk gets a child DRBG of its own, instantiated from fresh
+ * QRNG entropy and a QRNG nonce, with the chunk offset as personalization string, and writes
+ * only its own region of the target. The mechanism is chosen by SecureRandom algorithm name
+ * through com.quside.bulk.algorithm and defaults to "QRNG", Hash_DRBG over SHA-512; "QRNG-CTR"
+ * is by far the fastest where the CPU has AES instructions.
+ * </p>
+ */
+public final class BulkGenerator
+{
+    static final String ALGORITHM_PROPERTY = "com.quside.bulk.algorithm";
+    static final String CHUNK_SIZE_PROPERTY = "com.quside.bulk.chunkSize";
+
+    private static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    private final QusideEntropySource entropySource;
+    private final DRBGMechanism mechanism;
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+
+    /**
+     * Create a generator configured from the com.quside.bulk.* properties, running on the
+     * common fork/join pool.
+     */
+    public BulkGenerator()
+    {
+        this(Properties.getPropertyValue(ALGORITHM_PROPERTY, DRBGMechanism.HASH_SHA512.getAlgorithm()));
+    }
+
+    /**
+     * Create a generator for a given algorithm, running on the common fork/join pool.
+     *
+     * @param algorithm a QRNG SecureRandom algorithm name, e.g. "QRNG", "QRNG-HMAC" or "QRNG-CTR".
+     */
+    public BulkGenerator(String algorithm)
+    {
+        this(algorithm, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create a generator for a given algorithm, running on the passed in pool.
+     *
+     * @param algorithm a QRNG SecureRandom algorithm name, e.g. "QRNG", "QRNG-HMAC" or "QRNG-CTR".
+     * @param pool      the pool to run the chunk tasks on.
+     */
+    public BulkGenerator(String algorithm, ForkJoinPool pool)
+    {
+        this(new QusideEntropySource(), DRBGMechanism.forAlgorithm(algorithm), pool,
+            Properties.asInteger(CHUNK_SIZE_PROPERTY, DEFAULT_CHUNK_SIZE));
+    }
+
+    BulkGenerator(QusideEntropySource entropySource, DRBGMechanism mechanism, ForkJoinPool pool, int chunkSize)
+    {
+        if (chunkSize < 1)
+        {
+            throw new IllegalArgumentException("Bulk chunk size must be positive");
+        }
+
+        this.entropySource = entropySource;
+        this.mechanism = mechanism;
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Fill an array with random data.
+     *
+     * @param output the array to fill.
+     * @return the statistics of the fill.
+     */
+    public BulkStatistics fill(byte[] output)
+    {
+        return fill(ByteBuffer.wrap(output));
+    }
+
+    /**
+     * Fill the remaining bytes of a buffer, heap or direct, with random data. The buffer position
+     * is advanced to its limit.
+     *
+     * @param output the buffer to fill.
+     * @return the statistics of the fill.
+     */
+    public BulkStatistics fill(ByteBuffer output)
+    {
+        ByteBuffer target = output.slice();
+        int length = target.remaining();
+        int chunks = (int)(((long)length + chunkSize - 1) / chunkSize);
+
+        long start = System.nanoTime();
+        if (chunks != 0)
+        {
+            pool.invoke(new FillTask(target, 0, chunks));
+        }
+        long elapsed = System.nanoTime() - start;
+
+        output.position(output.limit());
+
+        return new BulkStatistics(mechanism.getAlgorithm(), length, chunks, pool.getParallelism(), elapsed);
+    }
+
+    private SP80090DRBG newDRBG(long offset)
+    {
+        byte[] perso = new byte[8];
+        for (int i = 0; i != perso.length; i++)
+        {
+            perso[i] = (byte)(offset >>> (56 - i * 8));
+        }
+
+        byte[] nonce = new byte[entropySource.entropySize() / 8];
+        entropySource.getRandomBytes(nonce);
+
+        return mechanism.create(entropySource, entropySource.entropySize(), perso, nonce);
+    }
+
+    /**
+     * Generates chunks [from, to) of the target, halving the range until a single chunk is left.
+     */
+    private final class FillTask
+        extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final ByteBuffer target;
+        private final int from;
+        private final int to;
+
+        FillTask(ByteBuffer target, int from, int to)
+        {
+            this.target = target;
+            this.from = from;
+            this.to = to;
+        }
+
+        protected void compute()
+        {
+            if (to - from > 1)
+            {
+                int mid = (from + to) >>> 1;
+                invokeAll(new FillTask(target, from, mid), new FillTask(target, mid, to));
+                return;
+            }
+
+            long offset = (long)from * chunkSize;
+            int end = (int)Math.min(offset + chunkSize, target.capacity());
+
+            ByteBuffer region = target.duplicate();
+            region.limit(end);
+            region.position((int)offset);
+
+            newDRBG(offset).generate(region, null, false);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.quside;
+
+/**
+ * Outcome of a single {@link BulkGenerator} fill.
+ */
+public final class BulkStatistics
+{
+    private final String algorithm;
+    private final long bytes;
+    private final int tasks;
+    private final int parallelism;
+    private final long elapsedNanos;
+
+    BulkStatistics(String algorithm, long bytes, int tasks, int parallelism, long elapsedNanos)
+    {
+        this.algorithm = algorithm;
+        this.bytes = bytes;
+        this.tasks = tasks;
+        this.parallelism = parallelism;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Return the SecureRandom algorithm whose DRBG mechanism produced the output.
+     *
+     * @return the algorithm name.
+     */
+    public String getAlgorithm()
+    {
+        return algorithm;
+    }
+
+    /**
+     * Return the number of random bytes written.
+     *
+     * @return the byte count.
+     */
+    public long getBytes()
+    {
+        return bytes;
+    }
+
+    /**
+     * Return the number of tasks the fill was split into, each with its own DRBG.
+     *
+     * @return the task count.
+     */
+    public int getTasks()
+    {
+        return tasks;
+    }
+
+    /**
+     * Return the parallelism of the pool that ran the tasks.
+     *
+     * @return the pool parallelism.
+     */
+    public int getParallelism()
+    {
+        return parallelism;
+    }
+
+    /**
+     * Return the wall clock time of the fill, seeding of the child DRBGs included.
+     *
+     * @return the elapsed time in nanoseconds.
+     */
+    public long getElapsedNanos()
+    {
+        return elapsedNanos;
+    }
+
+    /**
+     * Return the achieved throughput.
+     *
+     * @return gigabytes (10^9 bytes) per second, 0 if nothing was written.
+     */
+    public double getGigabytesPerSecond()
+    {
+        return elapsedNanos == 0 ? 0 : (double)bytes / elapsedNanos;
+    }
+
+    public String toString()
+    {
+        return "Bulk[" + algorithm + "]: bytes=" + bytes + ", tasks=" + tasks + ", parallelism=" + parallelism
+            + ", ms=" + String.format("%.2f", elapsedNanos / 1e6) + ", GB/s=" + String.format("%.3f", getGigabytesPerSecond());
+    }
+}
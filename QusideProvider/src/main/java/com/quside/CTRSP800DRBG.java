@@ -0,0 +1,744 @@
+package com.quside;
+
+import com.quside.util.Arrays;
+import com.quside.util.Hex;
+
+import java.security.GeneralSecurityException;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * SP800-90A CTR DRBG over AES, always with the block cipher derivation function.
+ * <p>
+ * The AES rounds are left to javax.crypto, on HotSpot "AES/CTR/NoPadding" and
+ * "AES/ECB/NoPadding" run on the AES instructions of the processor. A request is produced as one
+ * counter mode stream with V + 1 as the initial counter block, which is the SP800-90A output
+ * sequence when ctr_len is the block length.
+ * </p>
+ */
+class CTRSP800DRBG
+        implements SP80090DRBG
+{
+    private final static long RESEED_MAX = 1L << (48 - 1);
+    private final static int MAX_BITS_REQUEST = 1 << (19 - 1);
+
+    private final static int BLOCK_SIZE = 16;
+
+    // keystream is produced by encrypting zeros, at most this many bytes per Cipher call
+    private final static int BATCH_SIZE = 4096;
+    private final static byte[] ZEROS = new byte[BATCH_SIZE];
+
+    private final static Map<String, byte[][]> kats = new HashMap<String, byte[][]>();
+    private final static Map<String, byte[][]> reseedValues = new HashMap<String, byte[][]>();
+    private final static Map<String, byte[][]> reseedKats = new HashMap<String, byte[][]>();
+
+    static
+    {
+        kats.put("AES-256", new byte[][]{
+                Hex.decode("f5771b72bb3c3ceeea5d4327159f7bcf5d3aed67adaa039528b3d5f846961700734ac1aa5d401709"),
+                Hex.decode("a6b09617644ea00b797ce09060d23682b89a09c293fb5fac71ba77943421a7559557bd957bce64c9")});
+
+        // Key, then V
+        reseedValues.put("AES-256", new byte[][]{
+                Hex.decode("99e43db8ef8fca19c34ed1b5d93d11774311dc3dcc2ad27a214826cb16df8015"),
+                Hex.decode("0bfd005bebc29f9434a198d8ee345235")});
+
+        reseedKats.put("AES-256", new byte[][]{
+                Hex.decode("d9d79da96de32061bf05de942a03207cfbbf7224fc6959424279bab36b4cd4fe2de20f367bf37632"),
+                Hex.decode("5f7a0f4cc3d6ff85925f6100b7f53f8c59e446c4cd5e8154809956f476a15caeef2e110d060214a3")});
+    }
+
+    private final Cipher _ctr;
+    private final Cipher _ecb;
+    private int _keySizeInBits;
+    private byte[] _K;
+    private byte[] _V;
+    private long _reseedCounter;
+    private EntropySource _entropySource;
+    private int _securityStrength;
+    private int _seedLength;
+    private byte[] _personalizationString;
+
+    // scratch, the initial counter block and the seedlen bytes of keystream used by the update
+    private final byte[] _iv = new byte[BLOCK_SIZE];
+    private byte[] _temp;
+
+    /**
+     * Construct a SP800-90A CTR DRBG using AES with a derivation function.
+     * <p>
+     * Minimum entropy requirement is the security strength requested.
+     * </p>
+     *
+     * @param keySizeInBits         AES key size, 128, 192 or 256.
+     * @param securityStrength      security strength required (in bits)
+     * @param entropySource         source of entropy to use for seeding/reseeding.
+     * @param personalizationString personalization string to distinguish this DRBG (may be null).
+     * @param nonce                 nonce to further distinguish this DRBG (may be null).
+     */
+    public CTRSP800DRBG(int keySizeInBits, int securityStrength, EntropySource entropySource, byte[] personalizationString, byte[] nonce)
+    {
+        _ctr = getCipher("AES/CTR/NoPadding");
+        _ecb = getCipher("AES/ECB/NoPadding");
+
+        init(keySizeInBits, securityStrength, entropySource, personalizationString, nonce);
+    }
+
+    /**
+     * Used to self test on module startup.
+     */
+    static void selfTest()
+    {
+        CTRSP800DRBG drbg = new CTRSP800DRBG(256, 256, new DRBGUtils.KATEntropyProvider().get(256), new byte[256], new byte[256]);
+        drbg.doSelfTest();
+        drbg.doReseedSelfTest();
+    }
+
+    private static Cipher getCipher(String transformation)
+    {
+        try
+        {
+            return Cipher.getInstance(transformation);
+        }
+        catch (GeneralSecurityException e)
+        {
+            throw new IllegalStateException("Unable to create " + transformation + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void init(int keySizeInBits, int securityStrength, EntropySource entropySource, byte[] personalizationString, byte[] nonce)
+    {
+        if (keySizeInBits != 128 && keySizeInBits != 192 && keySizeInBits != 256)
+        {
+            throw new IllegalArgumentException("AES key size must be 128, 192 or 256 bits");
+        }
+
+        if (securityStrength > keySizeInBits)
+        {
+            throw new IllegalArgumentException("Requested security strength is not supported by the derivation function");
+        }
+
+        if (entropySource.entropySize() < securityStrength)
+        {
+            throw new IllegalArgumentException("Not enough entropy for security strength required");
+        }
+
+        _keySizeInBits = keySizeInBits;
+        _entropySource = entropySource;
+        _securityStrength = securityStrength;
+        _personalizationString = Arrays.clone(personalizationString);
+        _seedLength = keySizeInBits + BLOCK_SIZE * 8;
+
+        // 1. seed_material = entropy_input || nonce || personalization_string.
+        // 2. seed_material = Block_Cipher_df (seed_material, seedlen).
+        // 3. Key = 0^keylen.
+        // 4. V = 0^blocklen.
+        // 5. (Key, V) = CTR_DRBG_Update (seed_material, Key, V).
+        // 6. reseed_counter = 1.
+        // 7. Return V, Key, and reseed_counter as the initial_working_state.
+
+        // fresh buffers, the self tests keep hold of the ones in use and restore them afterwards
+        _K = new byte[keySizeInBits / 8];
+        _V = new byte[BLOCK_SIZE];
+        _temp = new byte[_seedLength / 8];
+
+        byte[] entropy = getEntropy();
+        byte[] seedMaterial;
+        try
+        {
+            seedMaterial = blockCipherDf(entropy, nonce, personalizationString);
+        }
+        finally
+        {
+            Arrays.fill(entropy, (byte) 0);
+        }
+
+        startKeystream();
+        ctrUpdate(seedMaterial);
+        Arrays.fill(seedMaterial, (byte) 0);
+
+        _reseedCounter = 1;
+    }
+
+    /**
+     * Return the block size (in bits) of the DRBG.
+     *
+     * @return the number of bits produced on each internal round of the DRBG.
+     */
+    public int getBlockSize()
+    {
+        return BLOCK_SIZE * 8;
+    }
+
+    /**
+     * Return the largest request a single generate call accepts.
+     *
+     * @return the maximum number of bits per request.
+     */
+    public int getMaxBitsPerRequest()
+    {
+        return MAX_BITS_REQUEST;
+    }
+
+    /**
+     * Return the security strength of the DRBG.
+     *
+     * @return the security strength (in bits) of the DRBG.
+     */
+    public int getSecurityStrength()
+    {
+        return _securityStrength;
+    }
+
+    /**
+     * Return the personalization string used to create the DRBG.
+     *
+     * @return the personalization string used to create the DRBG.
+     */
+    public byte[] getPersonalizationString()
+    {
+        return Arrays.clone(_personalizationString);
+    }
+
+    /**
+     * Populate a passed in array with random data.
+     *
+     * @param output              output array for generated bits.
+     * @param additionalInput     additional input to be added to the DRBG in this step.
+     * @param predictionResistant true if a reseed should be forced, false otherwise.
+     * @return number of bits generated, -1 if a reseed required.
+     */
+    public int generate(byte[] output, byte[] additionalInput, boolean predictionResistant)
+    {
+        return generate(output, 0, output.length, additionalInput, predictionResistant);
+    }
+
+    /**
+     * Populate part of a passed in array with random data.
+     *
+     * @param output              output array for generated bits.
+     * @param outOff              offset into output of the first generated byte.
+     * @param outLen              number of bytes to generate.
+     * @param additionalInput     additional input to be added to the DRBG in this step.
+     * @param predictionResistant true if a reseed should be forced, false otherwise.
+     * @return number of bits generated, -1 if a reseed required.
+     */
+    public int generate(byte[] output, int outOff, int outLen, byte[] additionalInput, boolean predictionResistant)
+    {
+        // 1. If reseed_counter > reseed_interval, then return an indication that a
+        // reseed is required.
+        // 2. If (additional_input != Null), then
+        // 2.1 additional_input = Block_Cipher_df (additional_input, seedlen).
+        // 2.2 (Key, V) = CTR_DRBG_Update (additional_input, Key, V).
+        // Else additional_input = 0^seedlen.
+        // 3. temp = Null.
+        // 4. While (len (temp) < requested_number_of_bits) do:
+        // 4.1 V = (V + 1) mod 2^blocklen.
+        // 4.2 output_block = Block_Encrypt (Key, V).
+        // 4.3 temp = temp || output_block.
+        // 5. returned_bits = Leftmost (requested_number_of_bits) of temp.
+        // 6. (Key, V) = CTR_DRBG_Update (additional_input, Key, V).
+        // 7. reseed_counter = reseed_counter + 1.
+        // 8. Return (SUCCESS, returned_bits, Key, V, reseed_counter).
+        if (outOff < 0 || outLen < 0 || outOff > output.length - outLen)
+        {
+            throw new ArrayIndexOutOfBoundsException("outOff/outLen outside of output");
+        }
+
+        int numberOfBits = outLen * 8;
+
+        if (numberOfBits > MAX_BITS_REQUEST)
+        {
+            throw new IllegalArgumentException("Number of bits per request limited to " + MAX_BITS_REQUEST);
+        }
+
+        if (predictionResistant)
+        {
+            reseed(additionalInput);
+            additionalInput = null;
+        }
+
+        if (_reseedCounter > RESEED_MAX)
+        {
+            return -1;
+        }
+
+        // 2. an empty additional input is taken as Null, as in the CAVP vectors
+        byte[] dfInput = null;
+        if (additionalInput != null && additionalInput.length != 0)
+        {
+            dfInput = blockCipherDf(additionalInput, null, null);
+
+            startKeystream();
+            ctrUpdate(dfInput);
+        }
+
+        // 3. - 5. the blocks of temp are the counter mode keystream from V + 1
+        startKeystream();
+        keystream(output, outOff, outLen);
+
+        // 6. the update carries on from the last block used, the rest of a partial block is dropped
+        int partial = outLen % BLOCK_SIZE;
+        if (partial != 0)
+        {
+            keystream(_temp, 0, BLOCK_SIZE - partial);
+        }
+        ctrUpdate(dfInput);
+        if (dfInput != null)
+        {
+            Arrays.fill(dfInput, (byte) 0);
+        }
+
+        _reseedCounter++;
+
+        return numberOfBits;
+    }
+
+    /**
+     * Reseed the DRBG.
+     *
+     * @param additionalInput additional input to be added to the DRBG in this step.
+     */
+    public void reseed(byte[] additionalInput)
+    {
+        // 1. seed_material = entropy_input || additional_input.
+        // 2. seed_material = Block_Cipher_df (seed_material, seedlen).
+        // 3. (Key, V) = CTR_DRBG_Update (seed_material, Key, V).
+        // 4. reseed_counter = 1.
+        // 5. Return V, Key, and reseed_counter as the new_working_state.
+        byte[] entropy = getEntropy();
+        byte[] seedMaterial;
+        try
+        {
+            seedMaterial = blockCipherDf(entropy, additionalInput, null);
+        }
+        finally
+        {
+            Arrays.fill(entropy, (byte) 0);
+        }
+
+        startKeystream();
+        ctrUpdate(seedMaterial);
+        Arrays.fill(seedMaterial, (byte) 0);
+
+        _reseedCounter = 1;
+    }
+
+    // key the counter mode cipher with Key, starting from V + 1
+    private void startKeystream()
+    {
+        System.arraycopy(_V, 0, _iv, 0, BLOCK_SIZE);
+        for (int i = BLOCK_SIZE - 1; i >= 0; i--)
+        {
+            if (++_iv[i] != 0)
+            {
+                break;
+            }
+        }
+
+        try
+        {
+            _ctr.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(_K, "AES"), new IvParameterSpec(_iv));
+        }
+        catch (GeneralSecurityException e)
+        {
+            throw new IllegalStateException("Unable to initialise AES: " + e.getMessage(), e);
+        }
+    }
+
+    // the next len bytes of keystream into out at off
+    private void keystream(byte[] out, int off, int len)
+    {
+        try
+        {
+            while (len > 0)
+            {
+                int chunk = Math.min(len, BATCH_SIZE);
+
+                if (_ctr.update(ZEROS, 0, chunk, out, off) != chunk)
+                {
+                    throw new IllegalStateException("AES/CTR returned a short block");
+                }
+
+                off += chunk;
+                len -= chunk;
+            }
+        }
+        catch (GeneralSecurityException e)
+        {
+            throw new IllegalStateException("AES/CTR failed: " + e.getMessage(), e);
+        }
+    }
+
+    // CTR_DRBG_Update, the keystream must already be positioned at V + 1.
+    //
+    // 1. temp = Null.
+    // 2. While (len (temp) < seedlen) do
+    // 2.1 V = (V + 1) mod 2^blocklen.
+    // 2.2 output_block = Block_Encrypt (Key, V).
+    // 2.3 temp = temp || output_block.
+    // 3. temp = Leftmost (seedlen) bits of temp.
+    // 4. temp = temp XOR provided_data.
+    // 5. Key = Leftmost (keylen) bits of temp.
+    // 6. V = Rightmost (outlen) bits of temp.
+    //
+    // a null providedData stands for 0^seedlen.
+    private void ctrUpdate(byte[] providedData)
+    {
+        keystream(_temp, 0, _temp.length);
+
+        if (providedData != null)
+        {
+            for (int i = 0; i != _temp.length; i++)
+            {
+                _temp[i] ^= providedData[i];
+            }
+        }
+
+        System.arraycopy(_temp, 0, _K, 0, _K.length);
+        System.arraycopy(_temp, _K.length, _V, 0, BLOCK_SIZE);
+        Arrays.fill(_temp, (byte) 0);
+    }
+
+    // Block_Cipher_df over a || b || c, returning seedlen bits.
+    //
+    // 1. If (number_of_bits_to_return > max_number_of_bits), then return an ERROR_FLAG.
+    // 2. L = len (input_string)/8.
+    // 3. N = number_of_bits_to_return/8.
+    // 4. S = L || N || input_string || 0x80.
+    // 5. While (len (S) mod outlen) != 0, do S = S || 0x00.
+    // 6. temp = the Null string.
+    // 7. i = 0.
+    // 8. K = Leftmost (keylen) bits of 0x00010203...1D1E1F.
+    // 9. While len (temp) < keylen + outlen, do
+    // 9.1 IV = i || 0^(outlen - len (i)).
+    // 9.2 temp = temp || BCC (K, (IV || S)).
+    // 9.3 i = i + 1.
+    // 10. K = Leftmost (keylen) bits of temp.
+    // 11. X = Next (outlen) bits of temp.
+    // 12. temp = the Null string.
+    // 13. While len (temp) < number_of_bits_to_return, do
+    // 13.1 X = Block_Encrypt (K, X).
+    // 13.2 temp = temp || X.
+    // 14. requested_bits = Leftmost (number_of_bits_to_return) of temp.
+    private byte[] blockCipherDf(byte[] a, byte[] b, byte[] c)
+    {
+        int keyBytes = _keySizeInBits / 8;
+        int seedBytes = _seedLength / 8;
+        int inLen = length(a) + length(b) + length(c);
+
+        // IV || S, the IV block is rewritten for each i
+        int sLen = 4 + 4 + inLen + 1;
+        byte[] ivS = new byte[BLOCK_SIZE + ((sLen + BLOCK_SIZE - 1) / BLOCK_SIZE) * BLOCK_SIZE];
+        int off = BLOCK_SIZE;
+        putInt(inLen, ivS, off);
+        putInt(seedBytes, ivS, off + 4);
+        off += 8;
+        off = append(a, ivS, off);
+        off = append(b, ivS, off);
+        off = append(c, ivS, off);
+        ivS[off] = (byte) 0x80;
+
+        byte[] k = new byte[keyBytes];
+        for (int i = 0; i != k.length; i++)
+        {
+            k[i] = (byte) i;
+        }
+
+        byte[] temp = new byte[keyBytes + BLOCK_SIZE];
+        byte[] chain = new byte[BLOCK_SIZE];
+        byte[] block = new byte[BLOCK_SIZE];
+        try
+        {
+            initECB(k);
+            for (int i = 0; i * BLOCK_SIZE < temp.length; i++)
+            {
+                putInt(i, ivS, 0);
+
+                // BCC (K, IV || S)
+                Arrays.fill(chain, (byte) 0);
+                for (int j = 0; j != ivS.length; j += BLOCK_SIZE)
+                {
+                    for (int n = 0; n != BLOCK_SIZE; n++)
+                    {
+                        block[n] = (byte) (chain[n] ^ ivS[j + n]);
+                    }
+                    encryptBlock(block, chain);
+                }
+
+                System.arraycopy(chain, 0, temp, i * BLOCK_SIZE, Math.min(BLOCK_SIZE, temp.length - i * BLOCK_SIZE));
+            }
+
+            System.arraycopy(temp, 0, k, 0, keyBytes);
+            System.arraycopy(temp, keyBytes, chain, 0, BLOCK_SIZE);
+
+            byte[] out = new byte[seedBytes];
+            initECB(k);
+            for (int i = 0; i < out.length; i += BLOCK_SIZE)
+            {
+                encryptBlock(chain, block);
+                System.arraycopy(block, 0, chain, 0, BLOCK_SIZE);
+                System.arraycopy(block, 0, out, i, Math.min(BLOCK_SIZE, out.length - i));
+            }
+
+            return out;
+        }
+        finally
+        {
+            Arrays.fill(ivS, (byte) 0);
+            Arrays.fill(k, (byte) 0);
+            Arrays.fill(temp, (byte) 0);
+            Arrays.fill(chain, (byte) 0);
+            Arrays.fill(block, (byte) 0);
+        }
+    }
+
+    private void initECB(byte[] key)
+    {
+        try
+        {
+            _ecb.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"));
+        }
+        catch (GeneralSecurityException e)
+        {
+            throw new IllegalStateException("Unable to initialise AES: " + e.getMessage(), e);
+        }
+    }
+
+    private void encryptBlock(byte[] in, byte[] out)
+    {
+        try
+        {
+            _ecb.update(in, 0, BLOCK_SIZE, out, 0);
+        }
+        catch (GeneralSecurityException e)
+        {
+            throw new IllegalStateException("AES/ECB failed: " + e.getMessage(), e);
+        }
+    }
+
+    private static int length(byte[] bs)
+    {
+        return (bs == null) ? 0 : bs.length;
+    }
+
+    private static int append(byte[] bs, byte[] buf, int off)
+    {
+        if (bs == null)
+        {
+            return off;
+        }
+        System.arraycopy(bs, 0, buf, off, bs.length);
+        return off + bs.length;
+    }
+
+    private static void putInt(int v, byte[] bs, int off)
+    {
+        bs[off] = (byte) (v >>> 24);
+        bs[off + 1] = (byte) (v >>> 16);
+        bs[off + 2] = (byte) (v >>> 8);
+        bs[off + 3] = (byte) v;
+    }
+
+    private byte[] getEntropy()
+    {
+        byte[] entropy = _entropySource.getEntropy();
+        if (entropy == null || entropy.length < (_securityStrength + 7) / 8)
+        {
+            throw new IllegalStateException("Insufficient entropy provided by entropy source");
+        }
+        return entropy;
+    }
+
+    private String getAlgorithmName()
+    {
+        return "AES-" + _keySizeInBits;
+    }
+
+    public void doSelfTest() throws EntropyProviderOperationException
+    {
+        byte[] origK = _K;
+        byte[] origV = _V;
+        byte[] origTemp = _temp;
+        byte[] personalizationString = _personalizationString;
+        long origReseedCounter = _reseedCounter;
+        EntropySource origEntropySource = _entropySource;
+        int origKeySizeInBits = _keySizeInBits;
+        int origSeedLength = _seedLength;
+        int origSecurityStrength = _securityStrength;
+
+        try
+        {
+            byte[] personalization = Hex.decode("404142434445464748494A4B4C4D4E4F505152535455565758595A5B5C5D5E5F606162636465666768696A6B6C6D6E6F70717273747576");
+            byte[] nonce = Hex.decode("2021222324");
+
+            final int entropyStrength = _keySizeInBits;
+
+            byte[][] expected = kats.get(getAlgorithmName());
+
+            init(_keySizeInBits, _securityStrength, new DRBGUtils.KATEntropyProvider().get(entropyStrength), personalization, nonce);
+
+            byte[] output = new byte[expected[0].length];
+
+            generate(output, null, true);
+            if (!Arrays.areEqual(expected[0], output))
+            {
+                EntropyProviderStatus.fail("DRBG Block 1 KAT failure");
+            }
+
+            output = new byte[expected[1].length];
+
+            generate(output, null, true);
+            if (!Arrays.areEqual(expected[1], output))
+            {
+                EntropyProviderStatus.fail("DRBG Block 2 KAT failure");
+            }
+
+            try
+            {
+                init(_keySizeInBits, _securityStrength, new DRBGUtils.LyingEntropySource(entropyStrength), personalization, nonce);
+
+                EntropyProviderStatus.fail("DRBG LyingEntropySource not detected in init");
+            }
+            catch (IllegalStateException e)
+            {
+                if (!e.getMessage().equals("Insufficient entropy provided by entropy source"))
+                {
+                    EntropyProviderStatus.fail("DRBG self test failed init entropy check");
+                }
+            }
+
+            try
+            {
+                init(_keySizeInBits, _securityStrength, new DRBGUtils.LyingEntropySource(20), personalization, nonce);
+
+                EntropyProviderStatus.fail("DRBG insufficient EntropySource not detected");
+            }
+            catch (IllegalArgumentException e)
+            {
+                if (!e.getMessage().equals("Not enough entropy for security strength required"))
+                {
+                    EntropyProviderStatus.fail("DRBG self test failed init entropy check");
+                }
+            }
+
+            try
+            {
+                _entropySource = new DRBGUtils.LyingEntropySource(entropyStrength);
+
+                reseed(null);
+
+                EntropyProviderStatus.fail("DRBG LyingEntropySource not detected in reseed");
+            }
+            catch (IllegalStateException e)
+            {
+                if (!e.getMessage().equals("Insufficient entropy provided by entropy source"))
+                {
+                    EntropyProviderStatus.fail("DRBG self test failed reseed entropy check");
+                }
+            }
+
+            try
+            {
+                init(_keySizeInBits, entropyStrength + 1, new DRBGUtils.KATEntropyProvider().get(entropyStrength), personalization, nonce);
+
+                EntropyProviderStatus.fail("DRBG successful initialise with too high security strength");
+            }
+            catch (IllegalArgumentException e)
+            {
+                if (!e.getMessage().equals("Requested security strength is not supported by the derivation function"))
+                {
+                    EntropyProviderStatus.fail("DRBG self test failed init security strength check");
+                }
+            }
+        }
+        finally
+        {
+            _K = origK;
+            _V = origV;
+            _temp = origTemp;
+            _personalizationString = personalizationString;
+            _reseedCounter = origReseedCounter;
+            _entropySource = origEntropySource;
+            _keySizeInBits = origKeySizeInBits;
+            _seedLength = origSeedLength;
+            _securityStrength = origSecurityStrength;
+        }
+    }
+
+    public void doReseedSelfTest() throws EntropyProviderOperationException
+    {
+        byte[] origK = _K;
+        byte[] origV = _V;
+        byte[] personalizationString = _personalizationString;
+        long origReseedCounter = _reseedCounter;
+        EntropySource origEntropySource = _entropySource;
+        int origSecurityStrength = _securityStrength;
+
+        try
+        {
+            byte[] additionalInput = Hex.decode("404142434445464748494A4B4C4D4E4F505152535455565758595A5B5C5D5E5F606162636465666768696A6B6C6D6E6F70717273747576");
+
+            int entropyStrength = _keySizeInBits;
+
+            byte[][] expected = reseedKats.get(getAlgorithmName());
+            byte[][] values = reseedValues.get(getAlgorithmName());
+
+            _K = Arrays.clone(values[0]);
+            _V = Arrays.clone(values[1]);
+
+            _entropySource = new DRBGUtils.KATEntropyProvider().get(entropyStrength);
+
+            reseed(additionalInput);
+
+            if (_reseedCounter != 1)
+            {
+                EntropyProviderStatus.fail("DRBG reseedCounter failed to reset");
+            }
+
+            byte[] output = new byte[expected[0].length];
+
+            generate(output, null, false);
+            if (!Arrays.areEqual(expected[0], output))
+            {
+                EntropyProviderStatus.fail("DRBG Block 1 reseed KAT failure");
+            }
+
+            output = new byte[expected[1].length];
+
+            generate(output, null, false);
+            if (!Arrays.areEqual(expected[1], output))
+            {
+                EntropyProviderStatus.fail("DRBG Block 2 reseed KAT failure");
+            }
+
+            try
+            {
+                _entropySource = new DRBGUtils.LyingEntropySource(entropyStrength);
+
+                reseed(null);
+
+                EntropyProviderStatus.fail("DRBG LyingEntropySource not detected on reseed");
+            }
+            catch (IllegalStateException e)
+            {
+                if (!e.getMessage().equals("Insufficient entropy provided by entropy source"))
+                {
+                    EntropyProviderStatus.fail("DRBG self test failed reseed entropy check");
+                }
+            }
+        }
+        finally
+        {
+            _K = origK;
+            _V = origV;
+            _personalizationString = personalizationString;
+            _reseedCounter = origReseedCounter;
+            _entropySource = origEntropySource;
+            _securityStrength = origSecurityStrength;
+        }
+    }
+}
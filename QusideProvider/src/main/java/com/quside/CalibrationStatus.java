@@ -0,0 +1,40 @@
+package com.quside;
+
+/**
+ * Calibration state of a QRNG board, mirroring quside_qrng_calibrationStatus in the native library.
+ */
+public enum CalibrationStatus
+{
+    DEFAULT,
+    CALIBRATING,
+    CALIB_SUCCED,
+    CALIB_FAIL,
+    I2C_ERROR;
+
+    private static final CalibrationStatus[] values = values();
+
+    /**
+     * Map a status code returned by the native library.
+     *
+     * @param code the quside_qrng_calibrationStatus value.
+     * @return the matching status, I2C_ERROR for codes the library does not define.
+     */
+    static CalibrationStatus fromCode(int code)
+    {
+        if (code < 0 || code >= values.length)
+        {
+            return I2C_ERROR;
+        }
+        return values[code];
+    }
+
+    /**
+     * Return whether a board in this state can deliver random data.
+     *
+     * @return true if calibration succeeded.
+     */
+    public boolean isReady()
+    {
+        return this == CALIB_SUCCED;
+    }
+}
@@ -0,0 +1,147 @@
+package com.quside;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The SP 800-90A mechanisms a QRNG SecureRandom can run, each registered with the provider under
+ * its own algorithm name.
+ */
+enum DRBGMechanism
+{
+    /**
+     * Hash_DRBG over SHA-512, the default "QRNG" algorithm.
+     */
+    HASH_SHA512("QRNG", "QRNG-SHA512", "QRNG-HASH")
+    {
+        SP80090DRBG create(EntropySource entropySource, int securityStrength, byte[] personalizationString, byte[] nonce)
+        {
+            return new HashSP800DRBG(DigestFactory.createSHA512(), securityStrength, entropySource, personalizationString, nonce);
+        }
+    },
+
+    /**
+     * Hash_DRBG over SHA-256, with the smaller 440 bit V and C.
+     */
+    HASH_SHA256("QRNG-SHA256")
+    {
+        SP80090DRBG create(EntropySource entropySource, int securityStrength, byte[] personalizationString, byte[] nonce)
+        {
+            return new HashSP800DRBG(DigestFactory.createDigest("SHA-256"), securityStrength, entropySource, personalizationString, nonce);
+        }
+    },
+
+    /**
+     * Hash_DRBG over SHA-384.
+     */
+    HASH_SHA384("QRNG-SHA384")
+    {
+        SP80090DRBG create(EntropySource entropySource, int securityStrength, byte[] personalizationString, byte[] nonce)
+        {
+            return new HashSP800DRBG(DigestFactory.createDigest("SHA-384"), securityStrength, entropySource, personalizationString, nonce);
+        }
+    },
+
+    /**
+     * Hash_DRBG over SHA-512/256, the 64-bit SHA-512 rounds with the 440 bit V and C.
+     */
+    HASH_SHA512_256("QRNG-SHA512/256")
+    {
+        SP80090DRBG create(EntropySource entropySource, int securityStrength, byte[] personalizationString, byte[] nonce)
+        {
+            return new HashSP800DRBG(DigestFactory.createDigest("SHA-512/256"), securityStrength, entropySource, personalizationString, nonce);
+        }
+    },
+
+    /**
+     * HMAC_DRBG over HMAC-SHA-512.
+     */
+    HMAC_SHA512("QRNG-HMAC", "QRNG-HMAC-SHA512")
+    {
+        SP80090DRBG create(EntropySource entropySource, int securityStrength, byte[] personalizationString, byte[] nonce)
+        {
+            return new HMacSP800DRBG(new HMac(DigestFactory.createSHA512()), securityStrength, entropySource, personalizationString, nonce);
+        }
+    },
+
+    /**
+     * CTR_DRBG over AES-256 with the derivation function.
+     */
+    CTR_AES256("QRNG-CTR", "QRNG-CTR-AES256")
+    {
+        SP80090DRBG create(EntropySource entropySource, int securityStrength, byte[] personalizationString, byte[] nonce)
+        {
+            return new CTRSP800DRBG(256, securityStrength, entropySource, personalizationString, nonce);
+        }
+    };
+
+    private final String algorithm;
+    private final List<String> aliases;
+
+    DRBGMechanism(String algorithm, String... aliases)
+    {
+        this.algorithm = algorithm;
+        this.aliases = Collections.unmodifiableList(Arrays.asList(aliases));
+    }
+
+    /**
+     * Return the SecureRandom algorithm name the mechanism is registered under.
+     *
+     * @return the algorithm name.
+     */
+    String getAlgorithm()
+    {
+        return algorithm;
+    }
+
+    /**
+     * Return the other names the mechanism is registered under.
+     *
+     * @return the aliases, possibly empty.
+     */
+    List<String> getAliases()
+    {
+        return aliases;
+    }
+
+    /**
+     * Return the mechanism registered under a SecureRandom algorithm name or alias.
+     *
+     * @param algorithm the algorithm name, e.g. "QRNG-CTR".
+     * @return the matching mechanism.
+     * @throws IllegalArgumentException if no mechanism is registered under algorithm.
+     */
+    static DRBGMechanism forAlgorithm(String algorithm)
+    {
+        String name = algorithm.trim();
+
+        for (DRBGMechanism mechanism : values())
+        {
+            if (mechanism.algorithm.equalsIgnoreCase(name))
+            {
+                return mechanism;
+            }
+            for (String alias : mechanism.aliases)
+            {
+                if (alias.equalsIgnoreCase(name))
+                {
+                    return mechanism;
+                }
+            }
+        }
+
+        throw new IllegalArgumentException("Unknown DRBG algorithm: " + algorithm);
+    }
+
+    /**
+     * Instantiate a DRBG of this mechanism.
+     *
+     * @param entropySource         source of entropy to use for seeding/reseeding.
+     * @param securityStrength      security strength required (in bits)
+     * @param personalizationString personalization string to distinguish this DRBG (may be null).
+     * @param nonce                 nonce to further distinguish this DRBG (may be null).
+     * @return a new DRBG.
+     */
+    abstract SP80090DRBG create(EntropySource entropySource, int securityStrength, byte[] personalizationString, byte[] nonce);
+}
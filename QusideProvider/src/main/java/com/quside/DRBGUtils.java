@@ -11,7 +11,10 @@ class DRBGUtils
 
     static
     {
+        maxSecurityStrengths.put("SHA-256", 256);
+        maxSecurityStrengths.put("SHA-384", 256);
         maxSecurityStrengths.put("SHA-512", 256);
+        maxSecurityStrengths.put("SHA-512/256", 256);
     }
 
     static int getMaxSecurityStrength(Digest d)
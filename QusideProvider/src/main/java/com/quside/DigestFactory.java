@@ -0,0 +1,203 @@
+package com.quside;
+
+import com.quside.util.Properties;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Source of the digests used by the DRBGs, their self tests and the module checksum.
+ * <p>
+ * SHA-256, SHA-384, SHA-512 and SHA-512/256 are available on both backends; where the JDK lacks
+ * one (SHA-512/256 before Java 9) the internal digest is used for it.
+ * </p>
+ * <p>
+ * com.quside.digest selects the implementation: "internal" for the module's own SHA512Digest,
+ * "jdk" for the JDK's MessageDigest, or "auto" (the default) to time both on first use. Auto
+ * times the work the DRBGs actually do, HMAC-SHA512 rekeys and MACs and Hash_DRBG sized hashes
+ * of short inputs, for at most com.quside.digest.calibrationMillis (default 5). The JDK backend
+ * is only kept if it is clearly faster; if the budget runs out before enough rounds have been
+ * timed the internal digest is used.
+ * </p>
+ */
+final class DigestFactory
+{
+    static final String BACKEND_PROPERTY = "com.quside.digest";
+    static final String CALIBRATION_PROPERTY = "com.quside.digest.calibrationMillis";
+
+    static final String INTERNAL = "internal";
+    static final String JDK = "jdk";
+    static final String AUTO = "auto";
+
+    // a SHA-512 Hash_DRBG hashes V (111 bytes) with a prefix byte, HMAC_DRBG V (64 bytes) and a byte
+    private static final int CALIBRATION_MESSAGE = 112;
+    private static final int CALIBRATION_ROUNDS = 64;
+    private static final int MIN_CALIBRATION_ROUNDS = 8;
+    private static final int DEFAULT_CALIBRATION_MILLIS = 5;
+
+    private DigestFactory()
+    {
+    }
+
+    /**
+     * Create a SHA-512 digest on the selected backend.
+     *
+     * @return a new digest.
+     */
+    static Digest createSHA512()
+    {
+        return createDigest("SHA-512");
+    }
+
+    /**
+     * Create a digest on the selected backend.
+     *
+     * @param algorithm "SHA-256", "SHA-384", "SHA-512" or "SHA-512/256".
+     * @return a new digest.
+     */
+    static Digest createDigest(String algorithm)
+    {
+        return create(Holder.BACKEND, algorithm);
+    }
+
+    /**
+     * Return the backend in use, "internal" or "jdk".
+     *
+     * @return the backend name.
+     */
+    static String getBackend()
+    {
+        return Holder.BACKEND;
+    }
+
+    static Digest create(String backend, String algorithm)
+    {
+        Digest digest = createInternal(algorithm);
+
+        if (JDK.equals(backend))
+        {
+            try
+            {
+                return new JcaDigest(algorithm, digest.getByteLength(), MessageDigest.getInstance(algorithm));
+            }
+            catch (NoSuchAlgorithmException e)
+            {
+                // SHA-512/256 only joined the JDK in Java 9, use ours
+            }
+        }
+
+        return digest;
+    }
+
+    private static Digest createInternal(String algorithm)
+    {
+        if ("SHA-256".equals(algorithm))
+        {
+            return new SHA256Digest();
+        }
+        if ("SHA-384".equals(algorithm))
+        {
+            return new SHA384Digest();
+        }
+        if ("SHA-512".equals(algorithm))
+        {
+            return new SHA512Digest();
+        }
+        if ("SHA-512/256".equals(algorithm))
+        {
+            return new SHA512tDigest(256);
+        }
+
+        throw new IllegalArgumentException("Unknown digest: " + algorithm);
+    }
+
+    static String selectBackend(String setting)
+    {
+        String backend = setting.trim();
+
+        if (INTERNAL.equalsIgnoreCase(backend))
+        {
+            return INTERNAL;
+        }
+        if (!JDK.equalsIgnoreCase(backend) && !AUTO.equalsIgnoreCase(backend))
+        {
+            throw new IllegalArgumentException("Unknown digest backend: " + setting);
+        }
+        if (!isJdkUsable())
+        {
+            return INTERNAL;
+        }
+        if (JDK.equalsIgnoreCase(backend))
+        {
+            return JDK;
+        }
+
+        return calibrate();
+    }
+
+    private static boolean isJdkUsable()
+    {
+        return create(JDK, "SHA-512") instanceof JcaDigest;
+    }
+
+    /**
+     * Run the DRBG workload on both backends in alternating rounds and keep the backend with the
+     * faster best round. The JDK backend has to win by more than a tenth, and enough rounds have
+     * to fit in the budget, or the internal digest is kept.
+     */
+    private static String calibrate()
+    {
+        long budget = Math.max(1, Properties.asInteger(CALIBRATION_PROPERTY, DEFAULT_CALIBRATION_MILLIS)) * 1000L * 1000L;
+        return calibrate(budget);
+    }
+
+    static String calibrate(long budgetNanos)
+    {
+        Digest internal = create(INTERNAL, "SHA-512");
+        Digest jdk = create(JDK, "SHA-512");
+        HMac internalMac = new HMac(create(INTERNAL, "SHA-512"));
+        HMac jdkMac = new HMac(create(JDK, "SHA-512"));
+        KeyParameter key = new KeyParameter(new byte[internal.getDigestSize()]);
+        byte[] message = new byte[CALIBRATION_MESSAGE];
+        byte[] out = new byte[internal.getDigestSize()];
+
+        long bestInternal = Long.MAX_VALUE;
+        long bestJdk = Long.MAX_VALUE;
+        long deadline = System.nanoTime() + budgetNanos;
+
+        int rounds = 0;
+        while (rounds != CALIBRATION_ROUNDS && System.nanoTime() - deadline < 0)
+        {
+            bestInternal = Math.min(bestInternal, time(internal, internalMac, key, message, out));
+            bestJdk = Math.min(bestJdk, time(jdk, jdkMac, key, message, out));
+            rounds++;
+        }
+
+        if (rounds < MIN_CALIBRATION_ROUNDS)
+        {
+            return INTERNAL;
+        }
+        return bestJdk * 10 < bestInternal * 9 ? JDK : INTERNAL;
+    }
+
+    private static long time(Digest digest, HMac hMac, KeyParameter key, byte[] message, byte[] out)
+    {
+        long start = System.nanoTime();
+
+        // an HMAC_DRBG update: a rekey and a MAC of V
+        hMac.init(key);
+        hMac.update(message, 0, 65);
+        hMac.doFinal(out, 0);
+
+        // a Hash_DRBG hashgen step
+        digest.update(message, 0, message.length);
+        digest.doFinal(out, 0);
+
+        return System.nanoTime() - start;
+    }
+
+    private static final class Holder
+    {
+        static final String BACKEND = selectBackend(Properties.getPropertyValue(BACKEND_PROPERTY, AUTO));
+    }
+}
@@ -0,0 +1,153 @@
+package com.quside;
+
+import com.quside.util.Properties;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Dedicated executor running device fetches on behalf of asynchronous callers.
+ * <p>
+ * The queue is bounded, a request that does not fit is completed exceptionally with a
+ * {@link RejectedExecutionException} rather than blocking the caller. Cancelling a future
+ * removes its request from the queue, a request that is already reading from the device
+ * runs to completion and its result is discarded.
+ * </p>
+ */
+class EntropyFetchExecutor
+{
+    static final String THREADS_PROPERTY = "com.quside.async.threads";
+    static final String QUEUE_SIZE_PROPERTY = "com.quside.async.queueSize";
+
+    private static final int DEFAULT_THREADS = 2;
+    private static final int DEFAULT_QUEUE_SIZE = 256;
+
+    private static final Object executorLock = new Object();
+    private static volatile EntropyFetchExecutor instance;
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Base constructor.
+     *
+     * @param threads   number of fetch threads.
+     * @param queueSize maximum number of requests waiting for a thread.
+     */
+    EntropyFetchExecutor(int threads, int queueSize)
+    {
+        if (threads < 1 || queueSize < 1)
+        {
+            throw new IllegalArgumentException("Fetch executor requires at least one thread and one queue slot");
+        }
+
+        final AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<Runnable>(queueSize), new ThreadFactory()
+            {
+                public Thread newThread(Runnable r)
+                {
+                    Thread t = new Thread(r, "Quside-Fetch-" + count.getAndIncrement());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Return the process wide executor, configured from the com.quside.async.* properties.
+     *
+     * @return the fetch executor.
+     */
+    static EntropyFetchExecutor getInstance()
+    {
+        EntropyFetchExecutor fetchExecutor = instance;
+        if (fetchExecutor == null)
+        {
+            synchronized (executorLock)
+            {
+                fetchExecutor = instance;
+                if (fetchExecutor == null)
+                {
+                    fetchExecutor = new EntropyFetchExecutor(
+                        Properties.asInteger(THREADS_PROPERTY, DEFAULT_THREADS),
+                        Properties.asInteger(QUEUE_SIZE_PROPERTY, DEFAULT_QUEUE_SIZE));
+                    instance = fetchExecutor;
+                }
+            }
+        }
+        return fetchExecutor;
+    }
+
+    /**
+     * Queue a fetch.
+     *
+     * @param fetch the blocking operation to run on a fetch thread.
+     * @return a future completed with the result of fetch, or exceptionally if the queue is full
+     * or fetch fails.
+     */
+    <T> CompletableFuture<T> submit(final Callable<T> fetch)
+    {
+        final CompletableFuture<T> result = new CompletableFuture<T>();
+        final Runnable task = new Runnable()
+        {
+            public void run()
+            {
+                // skip requests cancelled before they reached the front of the queue
+                if (result.isDone())
+                {
+                    return;
+                }
+
+                try
+                {
+                    result.complete(fetch.call());
+                }
+                catch (Throwable t)
+                {
+                    result.completeExceptionally(t);
+                }
+            }
+        };
+
+        try
+        {
+            executor.execute(task);
+        }
+        catch (RejectedExecutionException e)
+        {
+            result.completeExceptionally(e);
+            return result;
+        }
+
+        result.whenComplete(new BiConsumer<T, Throwable>()
+        {
+            public void accept(T value, Throwable error)
+            {
+                if (result.isCancelled())
+                {
+                    executor.remove(task);
+                }
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * Return the number of requests waiting for a fetch thread.
+     *
+     * @return the queue length.
+     */
+    int queued()
+    {
+        return executor.getQueue().size();
+    }
+}
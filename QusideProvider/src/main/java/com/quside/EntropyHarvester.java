@@ -0,0 +1,419 @@
+package com.quside;
+
+import com.quside.util.Properties;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Background harvester keeping a bounded ring of raw QRNG words filled ahead of demand.
+ * <p>
+ * One or more daemon threads fetch blocks from the device and publish them into a lock-free
+ * ring. Producers and consumers claim contiguous runs of slots with a CAS on the tail and
+ * head cursors and hand each slot over through its sequence number, so a word is only ever
+ * delivered once. Consumed slots are zeroized before they are handed back to the producers.
+ * </p>
+ * <p>
+ * The producers sleep while the ring holds at least the low watermark and, once woken, keep
+ * fetching until the ring reaches the high watermark. Part of a block the ring has no room for
+ * is kept and published before the next fetch. A request the ring cannot satisfy is
+ * refused rather than waited for, the caller is expected to go to the device directly.
+ * </p>
+ */
+class EntropyHarvester
+{
+    static final String ENABLED_PROPERTY = "com.quside.harvester";
+    static final String CAPACITY_PROPERTY = "com.quside.harvester.capacity";
+    static final String LOW_WATERMARK_PROPERTY = "com.quside.harvester.lowWatermark";
+    static final String HIGH_WATERMARK_PROPERTY = "com.quside.harvester.highWatermark";
+    static final String THREADS_PROPERTY = "com.quside.harvester.threads";
+
+    static final int FETCH_WORDS = 128;
+
+    private static final int DEFAULT_CAPACITY = 1 << 16;
+    private static final long IDLE_PARK_NANOS = 10000000L;
+    private static final long ERROR_BACKOFF_NANOS = 50000000L;
+    private static final int SCRATCH_WORDS = 256;
+
+    // Per-thread staging area, words written through the int view read back as little-endian bytes.
+    private static final ThreadLocal<Scratch> scratches = new ThreadLocal<Scratch>()
+    {
+        protected Scratch initialValue()
+        {
+            return new Scratch();
+        }
+    };
+
+    private static class Scratch
+    {
+        final ByteBuffer bytes = ByteBuffer.allocate(SCRATCH_WORDS * 4).order(ByteOrder.LITTLE_ENDIAN);
+        final IntBuffer ints = bytes.asIntBuffer();
+    }
+
+    /**
+     * Source of raw words for the harvester threads.
+     */
+    interface WordSource
+    {
+        /**
+         * Fill the first count entries of words with raw QRNG output.
+         *
+         * @param words the target array.
+         * @param count the number of words required.
+         * @return 0 on success, non-zero on failure.
+         */
+        int fetch(int[] words, int count);
+    }
+
+    private final WordSource source;
+    private final int capacity;
+    private final int mask;
+    private final int lowWatermark;
+    private final int highWatermark;
+
+    private final int[] ring;
+    private final AtomicLongArray sequence;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong fetchErrors = new AtomicLong();
+
+    private final Thread[] workers;
+    private volatile boolean running;
+
+    /**
+     * Base constructor.
+     *
+     * @param source        the device the harvester threads read from.
+     * @param capacity      size of the ring in 32 bit words, rounded up to a power of 2.
+     * @param lowWatermark  number of buffered words below which harvesting restarts.
+     * @param highWatermark number of buffered words at which harvesting pauses.
+     * @param threads       number of harvester threads.
+     */
+    EntropyHarvester(WordSource source, int capacity, int lowWatermark, int highWatermark, int threads)
+    {
+        if (capacity < FETCH_WORDS || capacity > (1 << 30))
+        {
+            throw new IllegalArgumentException("Harvester capacity must be between " + FETCH_WORDS + " and 2^30 words");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity)
+        {
+            size <<= 1;
+        }
+        if (lowWatermark < 0 || lowWatermark >= highWatermark || highWatermark > size)
+        {
+            throw new IllegalArgumentException("Harvester watermarks must satisfy 0 <= low < high <= capacity");
+        }
+        if (threads < 1)
+        {
+            throw new IllegalArgumentException("Harvester requires at least one thread");
+        }
+
+        this.source = source;
+        this.capacity = size;
+        this.mask = size - 1;
+        this.lowWatermark = lowWatermark;
+        this.highWatermark = highWatermark;
+        this.ring = new int[size];
+        this.sequence = new AtomicLongArray(size);
+        for (int i = 0; i != size; i++)
+        {
+            sequence.set(i, i);
+        }
+
+        this.workers = new Thread[threads];
+        for (int i = 0; i != threads; i++)
+        {
+            workers[i] = new Thread(new Runnable()
+            {
+                public void run()
+                {
+                    harvest();
+                }
+            }, "Quside-Harvester-" + i);
+            workers[i].setDaemon(true);
+        }
+    }
+
+    /**
+     * Return whether harvester mode has been requested.
+     *
+     * @return true if the com.quside.harvester property is set to true.
+     */
+    static boolean isEnabled()
+    {
+        return Properties.isOverrideSet(ENABLED_PROPERTY);
+    }
+
+    /**
+     * Create a harvester configured from the com.quside.harvester.* properties.
+     *
+     * @param source the device the harvester threads read from.
+     * @return an unstarted harvester.
+     */
+    static EntropyHarvester fromProperties(WordSource source)
+    {
+        int capacity = Properties.asInteger(CAPACITY_PROPERTY, DEFAULT_CAPACITY);
+
+        return new EntropyHarvester(source, capacity,
+            Properties.asInteger(LOW_WATERMARK_PROPERTY, capacity / 4),
+            Properties.asInteger(HIGH_WATERMARK_PROPERTY, capacity - capacity / 4),
+            Properties.asInteger(THREADS_PROPERTY, 1));
+    }
+
+    EntropyHarvester start()
+    {
+        running = true;
+        for (int i = 0; i != workers.length; i++)
+        {
+            workers[i].start();
+        }
+        return this;
+    }
+
+    void stop()
+    {
+        running = false;
+        signal();
+    }
+
+    int capacity()
+    {
+        return capacity;
+    }
+
+    /**
+     * Return the number of words currently claimed by producers and not yet consumed.
+     *
+     * @return an estimate of the buffered word count.
+     */
+    int available()
+    {
+        return (int)(tail.get() - head.get());
+    }
+
+    long fetchErrors()
+    {
+        return fetchErrors.get();
+    }
+
+    /**
+     * Copy len bytes of buffered entropy into dest. Each word taken from the ring is only
+     * used once, unused bytes of a trailing partial word are discarded. No garbage is created,
+     * the words are decoded through a per-thread scratch buffer.
+     *
+     * @param dest  the target array.
+     * @param start the start index.
+     * @param len   number of bytes.
+     * @return true if the request was satisfied, false if the ring holds too little data.
+     */
+    boolean take(byte[] dest, int start, int len)
+    {
+        int words = (len + 3) >>> 2;
+        if (words > capacity)
+        {
+            return false;
+        }
+
+        long h;
+        for (;;)
+        {
+            h = head.get();
+            if (!isPublished(h, words))
+            {
+                if (head.get() != h)
+                {
+                    continue;
+                }
+                signal();
+                return false;
+            }
+            if (head.compareAndSet(h, h + words))
+            {
+                break;
+            }
+        }
+
+        Scratch scratch = scratches.get();
+        ByteBuffer bytes = scratch.bytes;
+        IntBuffer ints = scratch.ints;
+        for (int done = 0; done != words; )
+        {
+            int n = Math.min(words - done, SCRATCH_WORDS);
+            int nBytes = Math.min(len - (done << 2), n << 2);
+
+            ints.clear();
+            drain(h + done, n, ints);
+
+            bytes.clear();
+            bytes.get(dest, start + (done << 2), nBytes);
+            java.util.Arrays.fill(bytes.array(), 0, n << 2, (byte)0);
+
+            done += n;
+        }
+
+        if (available() < lowWatermark)
+        {
+            signal();
+        }
+
+        return true;
+    }
+
+    /**
+     * Move n claimed words starting at pos into out, zeroizing each slot before handing it
+     * back to the producers.
+     */
+    private void drain(long pos, int n, IntBuffer out)
+    {
+        int idx = (int)pos & mask;
+        int first = Math.min(n, capacity - idx);
+
+        out.put(ring, idx, first);
+        java.util.Arrays.fill(ring, idx, idx + first, 0);
+        if (first != n)
+        {
+            out.put(ring, 0, n - first);
+            java.util.Arrays.fill(ring, 0, n - first, 0);
+        }
+
+        for (int i = 0; i != n; i++)
+        {
+            sequence.lazySet((int)(pos + i) & mask, pos + i + capacity);
+        }
+    }
+
+    private boolean isPublished(long h, int words)
+    {
+        for (int i = 0; i != words; i++)
+        {
+            if (sequence.get((int)(h + i) & mask) != h + i + 1)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Publish up to count words into the ring.
+     *
+     * @return the number of words accepted.
+     */
+    int offer(int[] words, int count)
+    {
+        return offer(words, 0, count);
+    }
+
+    /**
+     * Publish up to count words of words starting at off into the ring.
+     *
+     * @return the number of words accepted, always a prefix of the words offered.
+     */
+    int offer(int[] words, int off, int count)
+    {
+        long t;
+        int n;
+        for (;;)
+        {
+            t = tail.get();
+            n = 0;
+            while (n != count && sequence.get((int)(t + n) & mask) == t + n)
+            {
+                n++;
+            }
+            if (n == 0)
+            {
+                if (tail.get() != t)
+                {
+                    continue;
+                }
+                return 0;
+            }
+            if (tail.compareAndSet(t, t + n))
+            {
+                break;
+            }
+        }
+
+        for (int i = 0; i != n; i++)
+        {
+            int idx = (int)(t + i) & mask;
+
+            ring[idx] = words[off + i];
+            sequence.lazySet(idx, t + i + 1);
+        }
+
+        return n;
+    }
+
+    private void signal()
+    {
+        for (int i = 0; i != workers.length; i++)
+        {
+            LockSupport.unpark(workers[i]);
+        }
+    }
+
+    private void harvest()
+    {
+        int[] block = new int[FETCH_WORDS];
+        // words of block already published, the part the ring did not accept is offered again
+        // before anything new is fetched
+        int published = FETCH_WORDS;
+
+        while (running)
+        {
+            while (running && available() >= lowWatermark)
+            {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+
+            while (running && available() < highWatermark)
+            {
+                if (published == FETCH_WORDS)
+                {
+                    int ret;
+                    try
+                    {
+                        ret = source.fetch(block, FETCH_WORDS);
+                    }
+                    catch (RuntimeException e)
+                    {
+                        ret = -1;
+                    }
+
+                    if (ret != 0)
+                    {
+                        fetchErrors.incrementAndGet();
+                        LockSupport.parkNanos(this, ERROR_BACKOFF_NANOS);
+                        continue;
+                    }
+                    published = 0;
+                }
+
+                int n = offer(block, published, FETCH_WORDS - published);
+                for (int i = published; i != published + n; i++)
+                {
+                    block[i] = 0;
+                }
+                published += n;
+
+                if (n == 0)
+                {
+                    // every free slot is still being drained by a consumer
+                    Thread.yield();
+                }
+            }
+        }
+
+        for (int i = 0; i != FETCH_WORDS; i++)
+        {
+            block[i] = 0;
+        }
+    }
+}
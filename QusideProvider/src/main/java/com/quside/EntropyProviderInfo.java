@@ -2,6 +2,9 @@ package com.quside;
 
 import com.quside.QusideEntropySource;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Utility class to allow access to information about entropy source
  */
@@ -104,4 +107,35 @@ public class EntropyProviderInfo
             return "Not Loaded";
         }
     }
+
+    /**
+     * SHA-512 implementation used by the DRBGs, "internal" or "jdk", see com.quside.digest.
+     *
+     * @return the digest backend name.
+     */
+    public static String digestBackend()
+    {
+        return DigestFactory.getBackend();
+    }
+
+    /**
+     * Per-board activity of the QRNG device pool.
+     *
+     * @return one entry per board, empty if no board is available.
+     */
+    public static List<BoardStatistics> boardStatistics()
+    {
+        try
+        {
+            return QRNGDevicePool.getInstance().getStatistics();
+        }
+        catch (UnsupportedOperationException e)
+        {
+            return Collections.emptyList();
+        }
+        catch (UnsatisfiedLinkError ule)
+        {
+            return Collections.emptyList();
+        }
+    }
 }
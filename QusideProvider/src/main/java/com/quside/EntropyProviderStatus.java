@@ -2,7 +2,7 @@ package com.quside;
 
 import com.quside.util.Arrays;
 import com.quside.util.Hex;
-import com.quside.util.Pack;
+import com.quside.util.Properties;
 import com.quside.util.Strings;
 
 import java.io.IOException;
@@ -11,42 +11,186 @@ import java.net.URLDecoder;
 import java.security.AccessController;
 import java.security.CodeSource;
 import java.security.PrivilegedAction;
-import java.util.Enumeration;
-import java.util.Map;
-import java.util.TreeMap;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
 
+/**
+ * Self test status of the module.
+ * <p>
+ * The power-on self test, the known-answer tests of every DRBG mechanism, runs once per process
+ * and its outcome is cached, so {@link #isReady()} and {@link #getStatusMessage()} only read a
+ * volatile field. com.quside.selfTest picks when it runs: "lazy" (the default) on the first
+ * status query, "eager" when a QusideProvider is created, or "background" on a Quside-SelfTest
+ * daemon thread started when a QusideProvider is created, with the module reporting not ready
+ * until it completes. In the other two modes a query made while the test runs waits for its
+ * outcome. {@link #runSelfTest()} repeats the tests on demand.
+ * </p>
+ */
 public class EntropyProviderStatus
 {
+    static final String SELF_TEST_PROPERTY = "com.quside.selfTest";
 
     public static final String MODULE_HMAC_KEY = "Legion of the Bouncy Castle Inc.";
-    private static Throwable statusException;
-    private static final AtomicBoolean readyStatus = new AtomicBoolean(false);
-    private static final Object statusLock = new Object();
+    private static volatile Throwable statusException;
+    private static volatile State state = State.UNTESTED;
+    private static volatile boolean background;
+    static final Object statusLock = new Object();
     private static final String READY = "READY";
+    private static final String TESTING = "SELF TEST RUNNING";
 
+    /**
+     * Module states, the power-on self test moves the module out of UNTESTED exactly once.
+     */
+    enum State
+    {
+        UNTESTED,
+        TESTING,
+        READY,
+        ERROR
+    }
+
+    /**
+     * Return whether the module passed its self tests, running the power-on self test first if
+     * it has not been started yet.
+     *
+     * @return true if the module is ready for use, false if the self tests failed or are still
+     * running in the background.
+     */
     public static boolean isReady()
+    {
+        return currentState() == State.READY;
+    }
+
+    /**
+     * Run the self tests again, whatever the current state. The previous outcome is reported
+     * until the new one is known.
+     *
+     * @return true if the self tests passed.
+     */
+    public static boolean runSelfTest()
     {
         synchronized (statusLock)
         {
-            try
+            return selfTest() == State.READY;
+        }
+    }
+
+    /**
+     * Start the power-on self test as com.quside.selfTest asks, called when a provider is created.
+     */
+    static void powerOn()
+    {
+        String mode = Properties.getPropertyValue(SELF_TEST_PROPERTY, "lazy").trim();
+
+        if ("eager".equalsIgnoreCase(mode))
+        {
+            powerOnSelfTest();
+        }
+        else if ("background".equalsIgnoreCase(mode))
+        {
+            synchronized (statusLock)
             {
-                HashSP800DRBG.selfTest();
+                if (state != State.UNTESTED)
+                {
+                    return;
+                }
+                background = true;
+                state = State.TESTING;
             }
-            catch (Exception ex)
+
+            Thread t = new Thread(new Runnable()
+            {
+                public void run()
+                {
+                    synchronized (statusLock)
+                    {
+                        selfTest();
+                    }
+                }
+            }, "Quside-SelfTest");
+            t.setDaemon(true);
+            t.start();
+        }
+        else if (!"lazy".equalsIgnoreCase(mode))
+        {
+            throw new IllegalArgumentException("Unknown self test mode: " + mode);
+        }
+    }
+
+    /**
+     * Return the module state without starting the power-on self test.
+     *
+     * @return the current state.
+     */
+    static State getState()
+    {
+        return state;
+    }
+
+    /**
+     * Put the module back into UNTESTED, as if no provider had been created, so that tests can
+     * drive the power-on self test more than once in one JVM.
+     */
+    static void resetForTesting()
+    {
+        synchronized (statusLock)
+        {
+            statusException = null;
+            background = false;
+            state = State.UNTESTED;
+        }
+    }
+
+    // a foreground power-on self test holds statusLock while it runs, so waiting for the lock
+    // waits for its outcome; only a background one is reported as still running.
+    private static State currentState()
+    {
+        State current = state;
+
+        if (current == State.UNTESTED || (current == State.TESTING && !background))
+        {
+            current = powerOnSelfTest();
+        }
+
+        return current;
+    }
+
+    private static State powerOnSelfTest()
+    {
+        synchronized (statusLock)
+        {
+            if (state == State.UNTESTED)
             {
-                statusException = ex;
-                return false;
+                state = State.TESTING;
+
+                return selfTest();
             }
 
+            return state;
+        }
+    }
 
-            readyStatus.set(true);
+    // called holding statusLock
+    private static State selfTest()
+    {
+        try
+        {
+            HashSP800DRBG.selfTest();
+            HMacSP800DRBG.selfTest();
+            CTRSP800DRBG.selfTest();
+        }
+        catch (Exception ex)
+        {
+            statusException = ex;
+            state = State.ERROR;
 
-            return readyStatus.get();
+            return State.ERROR;
         }
+
+        statusException = null;
+        state = State.READY;
+
+        return State.READY;
     }
 
     public static Throwable getErrorThrowable()
@@ -65,22 +209,20 @@ public class EntropyProviderStatus
 
     public static String getStatusMessage()
     {
-        try
-        {
-            isReady();
-        }
-        catch (EntropyProviderOperationException foe)
+        State current = currentState();
+
+        if (current == State.TESTING)
         {
-            // ignore as loader exception will now be set.
+            return TESTING;
         }
 
-        if (statusException != null)
+        Throwable error = statusException;
+        if (current == State.ERROR && error != null)
         {
-            return statusException.getMessage();
+            return error.getMessage();
         }
 
         return READY;
-
     }
 
     private static void checksumValidate()
@@ -123,7 +265,7 @@ public class EntropyProviderStatus
             {
                 try
                 {
-                    byte[] hmac = calculateModuleHMAC(jarFile);
+                    byte[] hmac = calculateModuleHMAC(rscName);
                     InputStream macIn = jarFile.getInputStream(jarFile.getEntry("META-INF/HMAC.SHA512"));
 
                     StringBuilder sb = new StringBuilder(hmac.length * 2);
@@ -152,76 +294,18 @@ public class EntropyProviderStatus
     }
 
 
-    private static byte[] calculateModuleHMAC(JarFile jarFile)
+    private static byte[] calculateModuleHMAC(String jarName)
     {
         // this code is largely the standard approach to self verifying a JCE with some minor modifications. It will calculate
-        // the SHA-256 HMAC on the classes.
+        // the SHA-512 HMAC on the classes, see ModuleChecksum.
         try
         {
-            HMac hMac = new HMac(new SHA512Digest());
-
-            hMac.init(new KeyParameter(Strings.toByteArray(MODULE_HMAC_KEY)));
-
-            // build an index to make sure we get things in the same order.
-            Map<String, JarEntry> index = new TreeMap<String, JarEntry>();
-
-            for (Enumeration<JarEntry> entries = jarFile.entries(); entries.hasMoreElements(); )
-            {
-                JarEntry jarEntry = entries.nextElement();
-
-                // Skip directories, META-INF, and module-info.class meta-data
-                if (jarEntry.isDirectory()
-                        || (jarEntry.getName().startsWith("META-INF/") && jarEntry.getName().indexOf("versions") < 0)
-                        || jarEntry.getName().indexOf("module-info.class") > 0)
-                {
-                    continue;
-                }
-
-                Object last = index.put(jarEntry.getName(), jarEntry);
-                if (last != null)
-                {
-                    IllegalStateException e = new IllegalStateException("Unable to initialize module: duplicate entry found in jar file");
-                    statusException = e;
-                    throw e;
-                }
-            }
-
-            byte[] buf = new byte[8192];
-            for (Map.Entry<String, JarEntry> entry : index.entrySet())
-            {
-                JarEntry jarEntry = entry.getValue();
-                InputStream is = jarFile.getInputStream(jarEntry);
-
-                // Read in each jar entry. A SecurityException will
-                // be thrown if a signature/digest check fails - if that happens
-                // we'll just return an empty checksum
-
-                // header information
-                byte[] encName = Strings.toUTF8ByteArray(jarEntry.getName());
-                hMac.update((byte) 0x5B);   // '['
-                hMac.update(encName, 0, encName.length);
-                hMac.update(Pack.longToBigEndian(jarEntry.getSize()), 0, 8);
-                hMac.update((byte) 0x5D);    // ']'
-
-                // contents
-                int n;
-                while ((n = is.read(buf, 0, buf.length)) != -1)
-                {
-                    hMac.update(buf, 0, n);
-                }
-                is.close();
-            }
-
-            hMac.update((byte) 0x5B);   // '['
-            byte[] encName = Strings.toUTF8ByteArray("END");
-            hMac.update(encName, 0, encName.length);
-            hMac.update((byte) 0x5D);    // ']'
-
-            byte[] hmacResult = new byte[hMac.getMacSize()];
-
-            hMac.doFinal(hmacResult, 0);
-
-            return hmacResult;
+            return ModuleChecksum.calculate(jarName, Strings.toByteArray(MODULE_HMAC_KEY));
+        }
+        catch (IllegalStateException e)
+        {
+            statusException = e;
+            return new byte[32];
         }
         catch (Exception e)
         {
@@ -340,19 +424,40 @@ public class EntropyProviderStatus
         // FSM_STATE:8.0
         // FSM_TRANS:3.2
         statusException = error;
+        state = State.ERROR;
         throw (EntropyProviderOperationException) statusException;
     }
 
+    /**
+     * Return the MAC of the module jar. It is only calculated again if the jar has changed.
+     *
+     * @return the module MAC, all zeros if it cannot be calculated.
+     */
     public static byte[] getModuleHMAC()
     {
         try
         {
             String rscName = getResourceName();
-            return calculateModuleHMAC(new JarFile(rscName));
+            if (rscName == null || rscName.startsWith("jrt:") || rscName.startsWith("file:"))
+            {
+                return new byte[64];
+            }
+            return calculateModuleHMAC(rscName);
         }
         catch (Exception e)
         {
             return new byte[64];
         }
     }
+
+    /**
+     * Return how long the last module MAC calculation took. Answers from the cache are not
+     * counted.
+     *
+     * @return the elapsed time in nanoseconds, -1 if the MAC has not been calculated yet.
+     */
+    public static long getModuleChecksumNanos()
+    {
+        return ModuleChecksum.getLastElapsedNanos();
+    }
 }
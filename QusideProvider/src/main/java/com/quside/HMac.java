@@ -17,8 +17,8 @@ class HMac
     private Digest digest;
     private int digestSize;
     private int blockLength;
-//    private Memoable ipadState;
-//    private Memoable opadState;
+    private Memoable ipadState;
+    private Memoable opadState;
 
     private byte[] inputPad;
     private byte[] outputBuf;
@@ -116,19 +116,20 @@ class HMac
         xorPad(inputPad, blockLength, IPAD);
         xorPad(outputBuf, blockLength, OPAD);
 
-//        if (digest instanceof Memoable)
-//        {
-//            opadState = ((Memoable)digest).copy();
-//
-//            ((Digest)opadState).update(outputBuf, 0, blockLength);
-//        }
+        // the snapshots are kept across init() calls, rekeying only overwrites them
+        if (digest instanceof Memoable)
+        {
+            opadState = snapshot(opadState);
+
+            ((Digest)opadState).update(outputBuf, 0, blockLength);
+        }
 
         digest.update(inputPad, 0, inputPad.length);
 
-//        if (digest instanceof Memoable)
-//        {
-//            ipadState = ((Memoable)digest).copy();
-//        }
+        if (digest instanceof Memoable)
+        {
+            ipadState = snapshot(ipadState);
+        }
     }
 
     public int getMacSize()
@@ -156,15 +157,15 @@ class HMac
     {
         digest.doFinal(outputBuf, blockLength);
 
-//        if (opadState != null)
-//        {
-//            ((Memoable)digest).reset(opadState);
-//            digest.update(outputBuf, blockLength, digest.getDigestSize());
-//        }
-//        else
-//        {
-        digest.update(outputBuf, 0, outputBuf.length);
-//        }
+        if (opadState != null)
+        {
+            ((Memoable)digest).reset(opadState);
+            digest.update(outputBuf, blockLength, digest.getDigestSize());
+        }
+        else
+        {
+            digest.update(outputBuf, 0, outputBuf.length);
+        }
 
         int len = digest.doFinal(out, outOff);
 
@@ -173,14 +174,14 @@ class HMac
             outputBuf[i] = 0;
         }
 
-//        if (ipadState != null)
-//        {
-//            ((Memoable)digest).reset(ipadState);
-//        }
-//        else
-//        {
-        digest.update(inputPad, 0, inputPad.length);
-        //}
+        if (ipadState != null)
+        {
+            ((Memoable)digest).reset(ipadState);
+        }
+        else
+        {
+            digest.update(inputPad, 0, inputPad.length);
+        }
 
         return len;
     }
@@ -190,15 +191,35 @@ class HMac
      */
     public void reset()
     {
-        /*
-         * reset the underlying digest.
-         */
-        digest.reset();
+        if (ipadState != null)
+        {
+            ((Memoable)digest).reset(ipadState);
+        }
+        else
+        {
+            /*
+             * reset the underlying digest.
+             */
+            digest.reset();
+
+            /*
+             * reinitialize the digest.
+             */
+            digest.update(inputPad, 0, inputPad.length);
+        }
+    }
 
-        /*
-         * reinitialize the digest.
-         */
-        digest.update(inputPad, 0, inputPad.length);
+    // copy the current digest state into state, allocating it on first use
+    private Memoable snapshot(Memoable state)
+    {
+        if (state == null)
+        {
+            return ((Memoable)digest).copy();
+        }
+
+        state.reset((Memoable)digest);
+
+        return state;
     }
 
     private static void xorPad(byte[] pad, int len, byte n)
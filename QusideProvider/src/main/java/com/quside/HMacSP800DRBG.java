@@ -0,0 +1,501 @@
+package com.quside;
+
+import com.quside.util.Arrays;
+import com.quside.util.Hex;
+
+import java.util.HashMap;
+import java.util.Map;
+
+class HMacSP800DRBG
+        implements SP80090DRBG
+{
+    private final static byte ZERO = 0x00;
+    private final static byte ONE = 0x01;
+
+    private final static long RESEED_MAX = 1L << (48 - 1);
+    private final static int MAX_BITS_REQUEST = 1 << (19 - 1);
+
+    private final static Map<String, byte[][]> kats = new HashMap<String, byte[][]>();
+    private final static Map<String, byte[][]> reseedValues = new HashMap<String, byte[][]>();
+    private final static Map<String, byte[][]> reseedKats = new HashMap<String, byte[][]>();
+
+    static
+    {
+        kats.put("SHA-512/HMAC", new byte[][]{
+                Hex.decode("7223e2b58fb4b987cbd25f0b01a19135ca5cd78ccc16e8e5f8c6efd33fe2a71a97c3c8456fba6507"),
+                Hex.decode("e90ee5626d5266cf6b70d118b07a0d4dd06ff0db4a65248628eadb88d9994f8e59a093b4ad217a83")});
+
+        // K, then V
+        reseedValues.put("SHA-512/HMAC", new byte[][]{
+                Hex.decode("a38679d0b3c1ed05394ad0edd8c5c42b03598ccea4e81b8a2a02e7772e2230fcfca5e4c4341d8309b9925426774b306d1af4d34e3a8a2ba27bc7f172b78f93d6"),
+                Hex.decode("397118fdac8d83ad98813c50759c85b8c47565d8268bf10da483153b747a74743a58a90e85aa9f705ce6984ffc128db567489817e4092d050d8a1cc596ddc119")});
+
+        reseedKats.put("SHA-512/HMAC", new byte[][]{
+                Hex.decode("e345f549b82eb737621d485042d066b731b219ce6a4a0ae0e915fb97e4971edf0a5d31fee373fd87"),
+                Hex.decode("709f3c20c39b0b5c35535fe3d663389383c77cfb4271c111d360e7912f85e138eb2e2911c97acd64")});
+    }
+
+    private HMac _hMac;
+    private byte[] _K;
+    private byte[] _V;
+    // wraps _K, KeyParameter does not copy so rekeying after an update allocates nothing
+    private KeyParameter _key;
+    private long _reseedCounter;
+    private EntropySource _entropySource;
+    private int _securityStrength;
+    private byte[] _personalizationString;
+
+    /**
+     * Construct a SP800-90A HMAC DRBG.
+     * <p>
+     * Minimum entropy requirement is the security strength requested.
+     * </p>
+     *
+     * @param hMac                  HMAC to use for the DRB stream.
+     * @param securityStrength      security strength required (in bits)
+     * @param entropySource         source of entropy to use for seeding/reseeding.
+     * @param personalizationString personalization string to distinguish this DRBG (may be null).
+     * @param nonce                 nonce to further distinguish this DRBG (may be null).
+     */
+    public HMacSP800DRBG(HMac hMac, int securityStrength, EntropySource entropySource, byte[] personalizationString, byte[] nonce)
+    {
+        init(hMac, securityStrength, entropySource, personalizationString, nonce);
+    }
+
+    /**
+     * Used to self test on module startup.
+     */
+    static void selfTest()
+    {
+        HMacSP800DRBG drbg = new HMacSP800DRBG(new HMac(DigestFactory.createSHA512()), 256, new DRBGUtils.KATEntropyProvider().get(256), new byte[256], new byte[256]);
+        drbg.doSelfTest();
+        drbg.doReseedSelfTest();
+    }
+
+    private void init(HMac hMac, int securityStrength, EntropySource entropySource, byte[] personalizationString, byte[] nonce)
+    {
+        if (securityStrength > DRBGUtils.getMaxSecurityStrength(hMac.getUnderlyingDigest()))
+        {
+            throw new IllegalArgumentException("Requested security strength is not supported by the derivation function");
+        }
+
+        if (entropySource.entropySize() < securityStrength)
+        {
+            throw new IllegalArgumentException("Not enough entropy for security strength required");
+        }
+
+        _hMac = hMac;
+        _entropySource = entropySource;
+        _securityStrength = securityStrength;
+        _personalizationString = Arrays.clone(personalizationString);
+
+        // 1. seed_material = entropy_input || nonce || personalization_string.
+        // 2. Key = 0x00 00...00. Comment: outlen bits.
+        // 3. V = 0x01 01...01. Comment: outlen bits.
+        // 4. (Key, V) = HMAC_DRBG_Update (seed_material, Key, V).
+        // 5. reseed_counter = 1.
+        // 6. Return V, Key, and reseed_counter as the initial_working_state.
+
+        // fresh buffers, the self tests keep hold of the ones in use and restore them afterwards
+        _K = new byte[hMac.getMacSize()];
+        _V = new byte[_K.length];
+        Arrays.fill(_V, ONE);
+        _key = new KeyParameter(_K);
+
+        byte[] entropy = getEntropy();
+        try
+        {
+            hmacUpdate(entropy, nonce, personalizationString);
+        }
+        finally
+        {
+            Arrays.fill(entropy, (byte) 0);
+        }
+
+        _reseedCounter = 1;
+    }
+
+    // 1. K = HMAC (K, V || 0x00 || provided_data).
+    // 2. V = HMAC (K, V).
+    // 3. If (provided_data = Null), then return K and V.
+    // 4. K = HMAC (K, V || 0x01 || provided_data).
+    // 5. V = HMAC (K, V).
+    // 6. Return K and V.
+    //
+    // provided_data is a || b || c, Null if all three are null.
+    private void hmacUpdate(byte[] a, byte[] b, byte[] c)
+    {
+        hmacUpdate(ZERO, a, b, c);
+
+        if (a != null || b != null || c != null)
+        {
+            hmacUpdate(ONE, a, b, c);
+        }
+    }
+
+    private void hmacUpdate(byte vValue, byte[] a, byte[] b, byte[] c)
+    {
+        _hMac.init(_key);
+        _hMac.update(_V, 0, _V.length);
+        _hMac.update(vValue);
+        update(a);
+        update(b);
+        update(c);
+        _hMac.doFinal(_K, 0);
+
+        _hMac.init(_key);
+        _hMac.update(_V, 0, _V.length);
+        _hMac.doFinal(_V, 0);
+    }
+
+    private void update(byte[] input)
+    {
+        if (input != null)
+        {
+            _hMac.update(input, 0, input.length);
+        }
+    }
+
+    /**
+     * Return the block size (in bits) of the DRBG.
+     *
+     * @return the number of bits produced on each internal round of the DRBG.
+     */
+    public int getBlockSize()
+    {
+        return _V.length * 8;
+    }
+
+    /**
+     * Return the largest request a single generate call accepts.
+     *
+     * @return the maximum number of bits per request.
+     */
+    public int getMaxBitsPerRequest()
+    {
+        return MAX_BITS_REQUEST;
+    }
+
+    /**
+     * Return the security strength of the DRBG.
+     *
+     * @return the security strength (in bits) of the DRBG.
+     */
+    public int getSecurityStrength()
+    {
+        return _securityStrength;
+    }
+
+    /**
+     * Return the personalization string used to create the DRBG.
+     *
+     * @return the personalization string used to create the DRBG.
+     */
+    public byte[] getPersonalizationString()
+    {
+        return Arrays.clone(_personalizationString);
+    }
+
+    /**
+     * Populate a passed in array with random data.
+     *
+     * @param output              output array for generated bits.
+     * @param additionalInput     additional input to be added to the DRBG in this step.
+     * @param predictionResistant true if a reseed should be forced, false otherwise.
+     * @return number of bits generated, -1 if a reseed required.
+     */
+    public int generate(byte[] output, byte[] additionalInput, boolean predictionResistant)
+    {
+        return generate(output, 0, output.length, additionalInput, predictionResistant);
+    }
+
+    /**
+     * Populate part of a passed in array with random data.
+     *
+     * @param output              output array for generated bits.
+     * @param outOff              offset into output of the first generated byte.
+     * @param outLen              number of bytes to generate.
+     * @param additionalInput     additional input to be added to the DRBG in this step.
+     * @param predictionResistant true if a reseed should be forced, false otherwise.
+     * @return number of bits generated, -1 if a reseed required.
+     */
+    public int generate(byte[] output, int outOff, int outLen, byte[] additionalInput, boolean predictionResistant)
+    {
+        // 1. If reseed_counter > reseed_interval, then return an indication that a
+        // reseed is required.
+        // 2. If additional_input != Null, then (Key, V) = HMAC_DRBG_Update
+        // (additional_input, Key, V).
+        // 3. temp = Null.
+        // 4. While (len (temp) < requested_number_of_bits) do:
+        // 4.1 V = HMAC (Key, V).
+        // 4.2 temp = temp || V.
+        // 5. returned_bits = Leftmost requested_number_of_bits of temp
+        // 6. (Key, V) = HMAC_DRBG_Update (additional_input, Key, V).
+        // 7. reseed_counter = reseed_counter + 1.
+        // 8. Return SUCCESS, returned_bits, and the new values of Key, V, and
+        // reseed_counter for the new_working_state.
+        if (outOff < 0 || outLen < 0 || outOff > output.length - outLen)
+        {
+            throw new ArrayIndexOutOfBoundsException("outOff/outLen outside of output");
+        }
+
+        int numberOfBits = outLen * 8;
+
+        if (numberOfBits > MAX_BITS_REQUEST)
+        {
+            throw new IllegalArgumentException("Number of bits per request limited to " + MAX_BITS_REQUEST);
+        }
+
+        if (predictionResistant)
+        {
+            reseed(additionalInput);
+            additionalInput = null;
+        }
+
+        if (_reseedCounter > RESEED_MAX)
+        {
+            return -1;
+        }
+
+        // 2.
+        if (additionalInput != null)
+        {
+            hmacUpdate(additionalInput, null, null);
+        }
+
+        // 3. - 5. temp is written straight into output.
+        int end = outOff + outLen;
+        _hMac.init(_key);
+        for (int off = outOff; off < end; off += _V.length)
+        {
+            _hMac.update(_V, 0, _V.length);
+            _hMac.doFinal(_V, 0);
+
+            System.arraycopy(_V, 0, output, off, Math.min(_V.length, end - off));
+        }
+
+        // 6.
+        hmacUpdate(additionalInput, null, null);
+
+        _reseedCounter++;
+
+        return numberOfBits;
+    }
+
+    /**
+     * Reseed the DRBG.
+     *
+     * @param additionalInput additional input to be added to the DRBG in this step.
+     */
+    public void reseed(byte[] additionalInput)
+    {
+        // 1. seed_material = entropy_input || additional_input.
+        // 2. (Key, V) = HMAC_DRBG_Update (seed_material, Key, V).
+        // 3. reseed_counter = 1.
+        // 4. Return V, Key, and reseed_counter as the new_working_state.
+        byte[] entropy = getEntropy();
+        try
+        {
+            hmacUpdate(entropy, additionalInput, null);
+        }
+        finally
+        {
+            Arrays.fill(entropy, (byte) 0);
+        }
+
+        _reseedCounter = 1;
+    }
+
+    private byte[] getEntropy()
+    {
+        byte[] entropy = _entropySource.getEntropy();
+        if (entropy == null || entropy.length < (_securityStrength + 7) / 8)
+        {
+            throw new IllegalStateException("Insufficient entropy provided by entropy source");
+        }
+        return entropy;
+    }
+
+    public void doSelfTest() throws EntropyProviderOperationException
+    {
+        byte[] origK = _K;
+        byte[] origV = _V;
+        KeyParameter origKey = _key;
+        byte[] personalizationString = _personalizationString;
+        long origReseedCounter = _reseedCounter;
+        EntropySource origEntropySource = _entropySource;
+        int origSecurityStrength = _securityStrength;
+
+        try
+        {
+            byte[] personalization = Hex.decode("404142434445464748494A4B4C4D4E4F505152535455565758595A5B5C5D5E5F606162636465666768696A6B6C6D6E6F70717273747576");
+            byte[] nonce = Hex.decode("2021222324");
+
+            final int entropyStrength = DRBGUtils.getMaxSecurityStrength(_hMac.getUnderlyingDigest());
+
+            byte[][] expected = kats.get(_hMac.getAlgorithmName());
+
+            init(_hMac, _securityStrength, new DRBGUtils.KATEntropyProvider().get(entropyStrength), personalization, nonce);
+
+            byte[] output = new byte[expected[0].length];
+
+            generate(output, null, true);
+            if (!Arrays.areEqual(expected[0], output))
+            {
+                EntropyProviderStatus.fail("DRBG Block 1 KAT failure");
+            }
+
+            output = new byte[expected[1].length];
+
+            generate(output, null, true);
+            if (!Arrays.areEqual(expected[1], output))
+            {
+                EntropyProviderStatus.fail("DRBG Block 2 KAT failure");
+            }
+
+            try
+            {
+                init(_hMac, _securityStrength, new DRBGUtils.LyingEntropySource(entropyStrength), personalization, nonce);
+
+                EntropyProviderStatus.fail("DRBG LyingEntropySource not detected in init");
+            }
+            catch (IllegalStateException e)
+            {
+                if (!e.getMessage().equals("Insufficient entropy provided by entropy source"))
+                {
+                    EntropyProviderStatus.fail("DRBG self test failed init entropy check");
+                }
+            }
+
+            try
+            {
+                init(_hMac, _securityStrength, new DRBGUtils.LyingEntropySource(20), personalization, nonce);
+
+                EntropyProviderStatus.fail("DRBG insufficient EntropySource not detected");
+            }
+            catch (IllegalArgumentException e)
+            {
+                if (!e.getMessage().equals("Not enough entropy for security strength required"))
+                {
+                    EntropyProviderStatus.fail("DRBG self test failed init entropy check");
+                }
+            }
+
+            try
+            {
+                _entropySource = new DRBGUtils.LyingEntropySource(entropyStrength);
+
+                reseed(null);
+
+                EntropyProviderStatus.fail("DRBG LyingEntropySource not detected in reseed");
+            }
+            catch (IllegalStateException e)
+            {
+                if (!e.getMessage().equals("Insufficient entropy provided by entropy source"))
+                {
+                    EntropyProviderStatus.fail("DRBG self test failed reseed entropy check");
+                }
+            }
+
+            try
+            {
+                init(_hMac, entropyStrength + 1, new DRBGUtils.KATEntropyProvider().get(entropyStrength), personalization, nonce);
+
+                EntropyProviderStatus.fail("DRBG successful initialise with too high security strength");
+            }
+            catch (IllegalArgumentException e)
+            {
+                if (!e.getMessage().equals("Requested security strength is not supported by the derivation function"))
+                {
+                    EntropyProviderStatus.fail("DRBG self test failed init security strength check");
+                }
+            }
+        }
+        finally
+        {
+            _K = origK;
+            _V = origV;
+            _key = origKey;
+            _personalizationString = personalizationString;
+            _reseedCounter = origReseedCounter;
+            _entropySource = origEntropySource;
+            _securityStrength = origSecurityStrength;
+        }
+    }
+
+    public void doReseedSelfTest() throws EntropyProviderOperationException
+    {
+        byte[] origK = _K;
+        byte[] origV = _V;
+        KeyParameter origKey = _key;
+        byte[] personalizationString = _personalizationString;
+        long origReseedCounter = _reseedCounter;
+        EntropySource origEntropySource = _entropySource;
+        int origSecurityStrength = _securityStrength;
+
+        try
+        {
+            byte[] additionalInput = Hex.decode("404142434445464748494A4B4C4D4E4F505152535455565758595A5B5C5D5E5F606162636465666768696A6B6C6D6E6F70717273747576");
+
+            int entropyStrength = DRBGUtils.getMaxSecurityStrength(_hMac.getUnderlyingDigest());
+
+            byte[][] expected = reseedKats.get(_hMac.getAlgorithmName());
+            byte[][] values = reseedValues.get(_hMac.getAlgorithmName());
+
+            _K = Arrays.clone(values[0]);
+            _V = Arrays.clone(values[1]);
+            _key = new KeyParameter(_K);
+
+            _entropySource = new DRBGUtils.KATEntropyProvider().get(entropyStrength);
+
+            reseed(additionalInput);
+
+            if (_reseedCounter != 1)
+            {
+                EntropyProviderStatus.fail("DRBG reseedCounter failed to reset");
+            }
+
+            byte[] output = new byte[expected[0].length];
+
+            generate(output, null, false);
+            if (!Arrays.areEqual(expected[0], output))
+            {
+                EntropyProviderStatus.fail("DRBG Block 1 reseed KAT failure");
+            }
+
+            output = new byte[expected[1].length];
+
+            generate(output, null, false);
+            if (!Arrays.areEqual(expected[1], output))
+            {
+                EntropyProviderStatus.fail("DRBG Block 2 reseed KAT failure");
+            }
+
+            try
+            {
+                _entropySource = new DRBGUtils.LyingEntropySource(entropyStrength);
+
+                reseed(null);
+
+                EntropyProviderStatus.fail("DRBG LyingEntropySource not detected on reseed");
+            }
+            catch (IllegalStateException e)
+            {
+                if (!e.getMessage().equals("Insufficient entropy provided by entropy source"))
+                {
+                    EntropyProviderStatus.fail("DRBG self test failed reseed entropy check");
+                }
+            }
+        }
+        finally
+        {
+            _K = origK;
+            _V = origV;
+            _key = origKey;
+            _personalizationString = personalizationString;
+            _reseedCounter = origReseedCounter;
+            _entropySource = origEntropySource;
+            _securityStrength = origSecurityStrength;
+        }
+    }
+}
@@ -9,8 +9,11 @@ import java.util.Map;
 class HashSP800DRBG
         implements SP80090DRBG
 {
-    private final static byte[] ZERO = {0x00};
-    private final static byte[] ONE = {0x01};
+    private final static byte ZERO = 0x00;
+    private final static byte ONE = 0x01;
+    private final static byte TWO = 0x02;
+    private final static byte THREE = 0x03;
+    private final static int NO_PREFIX = -1;
 
     private final static long RESEED_MAX = 1L << (48 - 1);
     private final static int MAX_BITS_REQUEST = 1 << (19 - 1);
@@ -23,16 +26,41 @@ class HashSP800DRBG
 
     static
     {
+        seedlens.put("SHA-256", 440);
+        seedlens.put("SHA-384", 888);
         seedlens.put("SHA-512", 888);
+        seedlens.put("SHA-512/256", 440);
+
+        kats.put("SHA-256", new byte[][]{
+                Hex.decode("788dd696649d97295de7ed10a2c55104abb36cd0f262abdc2b8b2b183a3602c3f7513d2a4893b759"),
+                Hex.decode("3db6a852f92035e4890fa53438cf8070020a95ae19f1098f98a4d4bdb65f3c5c2dd4c9fb5483410d")});
+        kats.put("SHA-384", new byte[][]{
+                Hex.decode("0536f72f4123b8e438981912b3c60b09d1303a93b7cbe4af13cd3ae01d389720ff687916135bb254"),
+                Hex.decode("80ae6b3d1a120d9f58d427a178c7d73d429758f6039962b66f8afbc7fa758228b13b8f5829588cd6")});
         kats.put("SHA-512", new byte[][]{
                 Hex.decode("ca8387ba70bc7f8cb71e5d25703972ed58c7b5c81649050cdc17a9f646f7bd57857ca715e411d2ca"),
                 Hex.decode("ce2fe5ba54cde888bee0f4863ca70b258ab6e2be31523542a4da66033433fb8e7e394b28198daa1e")});
+        kats.put("SHA-512/256", new byte[][]{
+                Hex.decode("881b2a06f0f23921341819bf9cf78ed122850a80ae6c6eaf84e84600d756486c442305a495db0d96"),
+                Hex.decode("c9351dfad36fd8309a5bd598ac4ee9ca22297263f21c21d8481acefea97f5e508134f43959ac7f90")});
 
+        reseedVs.put("SHA-256", Hex.decode("f46e3426b6d2be95b806e1e1e34af863bd55ef9968c3715525be9ba6e7ca5bc1"));
+        reseedVs.put("SHA-384", Hex.decode("804d4f9e76b5967d46751b1e39cea209a5a675f787c6c0c1cf1fcccf43e89e70e219319ed0754470a7cd9808d7324759"));
         reseedVs.put("SHA-512", Hex.decode("397118fdac8d83ad98813c50759c85b8c47565d8268bf10da483153b747a74743a58a90e85aa9f705ce6984ffc128db567489817e4092d050d8a1cc596ddc119"));
-
+        reseedVs.put("SHA-512/256", Hex.decode("e7dfd880c897049728614acc035c6eb348cbb1595219e73d435bbe9a02dec84d"));
+
+        reseedKats.put("SHA-256", new byte[][]{
+                Hex.decode("e8f24a7f6bcc17dfd862210a14b3d01a1287a4535db2cccf4d5d5a38d05289bf4114a4c94b9a6083"),
+                Hex.decode("ae314e48796a8d28e2f2c350c64850ec425d5bd89ecf9a7f3061a420897896fce34666c73c74efed")});
+        reseedKats.put("SHA-384", new byte[][]{
+                Hex.decode("f3251d32472f7c45f27bb73baf9cf5ba184f624e949fb8f7b6269403318bea2799580387f3aaa3b4"),
+                Hex.decode("935ba97aa1640b3047bf08a472a22380e83a8649373c610c91f690984d597c56a653d7ec0776a3d0")});
         reseedKats.put("SHA-512", new byte[][]{
                 Hex.decode("147abe77d9b19bf6331691eeb3571e55afb406d1ddcd7aa5f1b3de71f0d3eb6949ea580764588000"),
                 Hex.decode("59c18dd408b82f930411bfdeea503d0154a77263c934d7888677ce34018307d4dd035effed210979")});
+        reseedKats.put("SHA-512/256", new byte[][]{
+                Hex.decode("d91cda49fff5390fcd71c2885cab9e813553287a2bff5797abb15cee6569511552450669c2d6f2a3"),
+                Hex.decode("5c0fd45346f7842d95f52c024579a9c322142141df6d5c0a748b3720718bf1fb69c49dd8c426a7f6")});
     }
 
     private Digest _digest;
@@ -55,19 +83,22 @@ class HashSP800DRBG
      * @param personalizationString personalization string to distinguish this DRBG (may be null).
      * @param nonce                 nonce to further distinguish this DRBG (may be null).
      */
-    public HashSP800DRBG(SHA512Digest digest, int securityStrength, EntropySource entropySource, byte[] personalizationString, byte[] nonce)
+    public HashSP800DRBG(Digest digest, int securityStrength, EntropySource entropySource, byte[] personalizationString, byte[] nonce)
     {
         init(digest, securityStrength, entropySource, personalizationString, nonce);
     }
 
     /**
-     * Used to self test on module startup.
+     * Used to self test on module startup, runs the KATs for every supported digest.
      */
     static void selfTest()
     {
-        HashSP800DRBG drbg = new HashSP800DRBG(new SHA512Digest(), 256, new DRBGUtils.KATEntropyProvider().get(256), new byte[256], new byte[256]);
-        drbg.doSelfTest();
-        drbg.doReseedSelfTest();
+        for (String algorithm : seedlens.keySet())
+        {
+            HashSP800DRBG drbg = new HashSP800DRBG(DigestFactory.createDigest(algorithm), 256, new DRBGUtils.KATEntropyProvider().get(256), new byte[256], new byte[256]);
+            drbg.doSelfTest();
+            drbg.doReseedSelfTest();
+        }
     }
 
 
@@ -98,11 +129,24 @@ class HashSP800DRBG
         // 5. reseed_counter = 1.
         // 6. Return V, C, and reseed_counter as the initial_working_state
 
+        // fresh buffers, the self tests keep hold of the ones in use and restore them afterwards
+        int seedBytes = (_seedLength + 7) / 8;
+        workingBuf._V = new byte[seedBytes];
+        workingBuf._C = new byte[seedBytes];
+        workingBuf._data = new byte[seedBytes];
+        workingBuf._dig = new byte[digest.getDigestSize()];
+
         byte[] entropy = getEntropy();
-        byte[] seedMaterial = Arrays.concatenate(entropy, nonce, personalizationString);
-        Arrays.fill(entropy, (byte) 0);
+        try
+        {
+            hashDf(NO_PREFIX, entropy, nonce, personalizationString, workingBuf._V);
+        }
+        finally
+        {
+            Arrays.fill(entropy, (byte) 0);
+        }
 
-        reseedFromSeedMaterial(seedMaterial);
+        deriveC();
     }
 
     /**
@@ -115,6 +159,16 @@ class HashSP800DRBG
         return _digest.getDigestSize() * 8;
     }
 
+    /**
+     * Return the largest request a single generate call accepts.
+     *
+     * @return the maximum number of bits per request.
+     */
+    public int getMaxBitsPerRequest()
+    {
+        return MAX_BITS_REQUEST;
+    }
+
     /**
      * Return the security strength of the DRBG.
      *
@@ -144,6 +198,21 @@ class HashSP800DRBG
      * @return number of bits generated, -1 if a reseed required.
      */
     public int generate(byte[] output, byte[] additionalInput, boolean predictionResistant)
+    {
+        return generate(output, 0, output.length, additionalInput, predictionResistant);
+    }
+
+    /**
+     * Populate part of a passed in array with random data.
+     *
+     * @param output              output array for generated bits.
+     * @param outOff              offset into output of the first generated byte.
+     * @param outLen              number of bytes to generate.
+     * @param additionalInput     additional input to be added to the DRBG in this step.
+     * @param predictionResistant true if a reseed should be forced, false otherwise.
+     * @return number of bits generated, -1 if a reseed required.
+     */
+    public int generate(byte[] output, int outOff, int outLen, byte[] additionalInput, boolean predictionResistant)
     {
         // 1. If reseed_counter > reseed_interval, then return an indication that a
         // reseed is required.
@@ -158,7 +227,12 @@ class HashSP800DRBG
         // 6. reseed_counter = reseed_counter + 1.
         // 7. Return SUCCESS, returned_bits, and the new values of V, C, and
         // reseed_counter for the new_working_state.
-        int numberOfBits = output.length * 8;
+        if (outOff < 0 || outLen < 0 || outOff > output.length - outLen)
+        {
+            throw new ArrayIndexOutOfBoundsException("outOff/outLen outside of output");
+        }
+
+        int numberOfBits = outLen * 8;
 
         if (numberOfBits > MAX_BITS_REQUEST)
         {
@@ -176,65 +250,122 @@ class HashSP800DRBG
             return -1;
         }
 
+        byte[] V = workingBuf._V;
+        byte[] dig = workingBuf._dig;
+
         // 2.
         if (additionalInput != null)
         {
-            byte[] newInput = new byte[1 + workingBuf._V.length + additionalInput.length];
-            newInput[0] = 0x02;
-            System.arraycopy(workingBuf._V, 0, newInput, 1, workingBuf._V.length);
-            // TODO: inOff / inLength
-            System.arraycopy(additionalInput, 0, newInput, 1 + workingBuf._V.length, additionalInput.length);
-            byte[] w = hash(newInput);
-
-            addTo(workingBuf._V, w);
+            _digest.update(TWO);
+            _digest.update(V, 0, V.length);
+            _digest.update(additionalInput, 0, additionalInput.length);
+            _digest.doFinal(dig, 0);
+
+            addTo(V, dig);
         }
 
         // 3.
-        byte[] rv = hashgen(workingBuf._V, numberOfBits);
+        hashgen(V, output, outOff, outOff + outLen);
 
         // 4.
-        byte[] subH = new byte[workingBuf._V.length + 1];
-        System.arraycopy(workingBuf._V, 0, subH, 1, workingBuf._V.length);
-        subH[0] = 0x03;
-
-        byte[] H = hash(subH);
+        _digest.update(THREE);
+        _digest.update(V, 0, V.length);
+        _digest.doFinal(dig, 0);
 
-        // 5.
-        addTo(workingBuf._V, H);
-        addTo(workingBuf._V, workingBuf._C);
-        byte[] c = new byte[4];
-        c[0] = (byte) (_reseedCounter >> 24);
-        c[1] = (byte) (_reseedCounter >> 16);
-        c[2] = (byte) (_reseedCounter >> 8);
-        c[3] = (byte) _reseedCounter;
-
-        addTo(workingBuf._V, c);
+        // 5. only the low 32 bits of the counter have ever been added, the KATs depend on it
+        addTo(V, dig);
+        addTo(V, workingBuf._C);
+        addTo(V, _reseedCounter & 0xffffffffL);
 
         _reseedCounter++;
 
-        System.arraycopy(rv, 0, output, 0, output.length);
-
         return numberOfBits;
     }
 
     // this will always add the shorter length byte array mathematically to the
-    // longer length byte array.
-    // be careful....
-    private void addTo(byte[] longer, byte[] shorter)
+    // longer length byte array, both taken as big endian numbers, modulo the length
+    // of the longer one. The addition runs 8 bytes at a time from the right and stops
+    // as soon as the shorter array is used up and no carry is left.
+    private static void addTo(byte[] longer, byte[] shorter)
+    {
+        int end = longer.length;
+        int shortEnd = shorter.length;
+        long carry = 0;
+
+        while (end > 0)
+        {
+            if (shortEnd <= 0 && carry == 0)
+            {
+                return;
+            }
+
+            int n = Math.min(8, end);
+            long x = getLimb(longer, end, n);
+            long y = (shortEnd > 0) ? getLimb(shorter, shortEnd, Math.min(n, shortEnd)) : 0;
+
+            long sum = x + y;
+            long c = (Long.compareUnsigned(sum, x) < 0) ? 1 : 0;
+            sum += carry;
+            if (sum == 0 && carry != 0)
+            {
+                c = 1;
+            }
+
+            putLimb(longer, end, n, sum);
+            carry = c;
+            end -= n;
+            shortEnd -= n;
+        }
+    }
+
+    // add a small non-negative value to the big endian number v, modulo 2^(8 * v.length)
+    private static void addTo(byte[] v, long value)
+    {
+        int end = v.length;
+        long carry = value;
+
+        while (end > 0 && carry != 0)
+        {
+            int n = Math.min(8, end);
+            long x = getLimb(v, end, n);
+            long sum = x + carry;
+
+            carry = (Long.compareUnsigned(sum, x) < 0) ? 1 : 0;
+            putLimb(v, end, n, sum);
+            end -= n;
+        }
+    }
+
+    // add 1 to the big endian number v, a carry out of the low byte is rare
+    private static void increment(byte[] v)
+    {
+        for (int i = v.length - 1; i >= 0; i--)
+        {
+            if (++v[i] != 0)
+            {
+                return;
+            }
+        }
+    }
+
+    // the n bytes ending at end, as a big endian number
+    private static long getLimb(byte[] bs, int end, int n)
     {
-        int carry = 0;
-        for (int i = 1; i <= shorter.length; i++) // warning
+        long v = 0;
+        for (int i = end - n; i != end; i++)
         {
-            int res = (longer[longer.length - i] & 0xff) + (shorter[shorter.length - i] & 0xff) + carry;
-            carry = (res > 0xff) ? 1 : 0;
-            longer[longer.length - i] = (byte) res;
+            v = (v << 8) | (bs[i] & 0xffL);
         }
+        return v;
+    }
 
-        for (int i = shorter.length + 1; i <= longer.length; i++) // warning
+    // the low n bytes of v, big endian, into the n bytes ending at end
+    private static void putLimb(byte[] bs, int end, int n, long v)
+    {
+        for (int i = end - 1; i >= end - n; i--)
         {
-            int res = (longer[longer.length - i] & 0xff) + carry;
-            carry = (res > 0xff) ? 1 : 0;
-            longer[longer.length - i] = (byte) res;
+            bs[i] = (byte)v;
+            v >>>= 8;
         }
     }
 
@@ -260,28 +391,107 @@ class HashSP800DRBG
         // Comment: Precede with a byte of all zeros.
 
         byte[] entropy = getEntropy();
-        byte[] seedMaterial = Arrays.concatenate(ONE, workingBuf._V, entropy, additionalInput);
-        Arrays.fill(entropy, (byte) 0);
+        try
+        {
+            // V is part of the input, derive into the scratch buffer first
+            hashDf(ONE, workingBuf._V, entropy, additionalInput, workingBuf._data);
+        }
+        finally
+        {
+            Arrays.fill(entropy, (byte) 0);
+        }
+        if (workingBuf._V.length != workingBuf._data.length)
+        {
+            // only the reseed self test starts from a V that is not seedlen long
+            workingBuf._V = new byte[workingBuf._data.length];
+        }
+        System.arraycopy(workingBuf._data, 0, workingBuf._V, 0, workingBuf._V.length);
+        Arrays.fill(workingBuf._data, (byte) 0);
 
-        reseedFromSeedMaterial(seedMaterial);
+        deriveC();
     }
 
-    private void reseedFromSeedMaterial(byte[] seedMaterial)
+    // 4. C = Hash_df ((0x00 || V), seedlen).
+    // 5. reseed_counter = 1.
+    private void deriveC()
     {
-        workingBuf._V = hashSeedMaterial(seedMaterial);
-        workingBuf._C = hashSeedMaterial(Arrays.concatenate(ZERO, workingBuf._V));
+        hashDf(ZERO, workingBuf._V, null, null, workingBuf._C);
         _reseedCounter = 1;
     }
 
-    private byte[] hashSeedMaterial(byte[] seedMaterial)
+    /**
+     * Hash_df over prefix || a || b || c without assembling the seed material, see
+     * {@link DRBGUtils#hash_df(Digest, byte[], int)}.
+     *
+     * @param prefix leading byte of the seed material, NO_PREFIX for none.
+     * @param a      first part of the seed material (may be null).
+     * @param b      second part of the seed material (may be null).
+     * @param c      third part of the seed material (may be null).
+     * @param out    receives seedlen bits, must not be one of the inputs.
+     */
+    private void hashDf(int prefix, byte[] a, byte[] b, byte[] c, byte[] out)
     {
-        try
+        byte[] dig = workingBuf._dig;
+        int counter = 1;
+
+        for (int off = 0; off < out.length; off += dig.length)
         {
-            return DRBGUtils.hash_df(_digest, seedMaterial, _seedLength);
+            _digest.update((byte)counter);
+
+            _digest.update((byte)(_seedLength >> 24));
+            _digest.update((byte)(_seedLength >> 16));
+            _digest.update((byte)(_seedLength >> 8));
+            _digest.update((byte)_seedLength);
+
+            if (prefix != NO_PREFIX)
+            {
+                _digest.update((byte)prefix);
+            }
+            update(a);
+            update(b);
+            update(c);
+
+            finish(out, off, out.length);
+
+            counter++;
         }
-        finally
+
+        // do a left shift to get rid of excess bits.
+        if (_seedLength % 8 != 0)
+        {
+            int shift = 8 - (_seedLength % 8);
+            int carry = 0;
+
+            for (int i = 0; i != out.length; i++)
+            {
+                int v = out[i] & 0xff;
+                out[i] = (byte)((v >>> shift) | (carry << (8 - shift)));
+                carry = v;
+            }
+        }
+    }
+
+    private void update(byte[] input)
+    {
+        if (input != null)
         {
-            Arrays.fill(seedMaterial, (byte) 0);
+            _digest.update(input, 0, input.length);
+        }
+    }
+
+    // finish the digest into out at off, straight into out if the whole block fits before end
+    private void finish(byte[] out, int off, int end)
+    {
+        int digestSize = workingBuf._dig.length;
+
+        if (end - off >= digestSize)
+        {
+            _digest.doFinal(out, off);
+        }
+        else
+        {
+            _digest.doFinal(workingBuf._dig, 0);
+            System.arraycopy(workingBuf._dig, 0, out, off, end - off);
         }
     }
 
@@ -478,19 +688,6 @@ class HashSP800DRBG
 
     }
 
-    private byte[] hash(byte[] input)
-    {
-        byte[] hash = new byte[_digest.getDigestSize()];
-        doHash(input, hash);
-        return hash;
-    }
-
-    private void doHash(byte[] input, byte[] output)
-    {
-        _digest.update(input, 0, input.length);
-        _digest.doFinal(output, 0);
-    }
-
     // 1. m = [requested_number_of_bits / outlen]
     // 2. data = V.
     // 3. W = the Null string.
@@ -500,30 +697,22 @@ class HashSP800DRBG
     // 4.3 data = (data + 1) mod 2^seedlen
     // .
     // 5. returned_bits = Leftmost (requested_no_of_bits) bits of W.
-    private byte[] hashgen(byte[] input, int lengthInBits)
+    //
+    // W is written straight into output, from start up to end.
+    private void hashgen(byte[] input, byte[] output, int start, int end)
     {
-        int digestSize = _digest.getDigestSize();
-        int m = (lengthInBits / 8) / digestSize;
-
-        byte[] data = new byte[input.length];
+        byte[] data = workingBuf._data;
         System.arraycopy(input, 0, data, 0, input.length);
 
-        byte[] W = new byte[lengthInBits / 8];
-
-        byte[] dig = new byte[_digest.getDigestSize()];
-        for (int i = 0; i <= m; i++)
+        for (int off = start; off < end; off += workingBuf._dig.length)
         {
-            doHash(data, dig);
-
-            int bytesToCopy = ((W.length - i * dig.length) > dig.length)
-                    ? dig.length
-                    : (W.length - i * dig.length);
-            System.arraycopy(dig, 0, W, i * dig.length, bytesToCopy);
+            _digest.update(data, 0, data.length);
+            finish(output, off, end);
 
-            addTo(data, ONE);
+            increment(data);
         }
 
-        return W;
+        Arrays.fill(data, (byte) 0);
     }
 
     private static class WorkingBuffer
@@ -531,6 +720,10 @@ class HashSP800DRBG
         private byte[] _V;
         private byte[] _C;
 
+        // scratch space, seedlen and digest size bytes
+        private byte[] _data;
+        private byte[] _dig;
+
         @Override
         protected void finalize() throws Throwable
         {
@@ -538,6 +731,8 @@ class HashSP800DRBG
 
             Arrays.fill(_V, (byte) 0);
             Arrays.fill(_C, (byte) 0);
+            Arrays.fill(_data, (byte) 0);
+            Arrays.fill(_dig, (byte) 0);
         }
     }
 }
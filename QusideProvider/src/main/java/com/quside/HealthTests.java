@@ -0,0 +1,267 @@
+package com.quside;
+
+import java.nio.ByteBuffer;
+
+/**
+ * SP 800-90B continuous health tests over the raw output of a single QRNG board.
+ * <p>
+ * Every byte delivered by the board is one 8 bit sample. The Repetition Count Test (4.4.1) fails
+ * on a run of C identical samples, the Adaptive Proportion Test (4.4.2) once the first sample of
+ * a 512 sample window occurs C' times in that window. Both cutoffs are derived from the
+ * min-entropy the board reports through getHmin and a false positive probability of 2^-40 per
+ * sample, the lower end of the range SP 800-90B allows, so that the tests can stay on at full
+ * board throughput.
+ * </p>
+ * <p>
+ * The state carries over from one read to the next, so a run or a window split across two
+ * consecutive reads is still caught. Testing does not allocate. Reads from the same board are
+ * tested one at a time, in the order they complete; when several threads read one board at once
+ * that need not be the order the device delivered them, so a run split across two concurrent
+ * reads may be missed. Every read on its own is always tested in full.
+ * </p>
+ */
+final class HealthTests
+{
+    static final int WINDOW_SIZE = 512;
+    static final int ALPHA_EXPONENT = 40;
+
+    // used when the board cannot report its min-entropy, in bits per output bit
+    static final double DEFAULT_HMIN = 0.5;
+
+    private static final int SCRATCH_SIZE = 512;
+
+    private final int rctCutoff;
+    private final int aptCutoff;
+    private final byte[] scratch = new byte[SCRATCH_SIZE];
+
+    private int last = -1;
+    private int run;
+    private int reference;
+    private int count;
+    private int position;
+
+    /**
+     * Base constructor.
+     *
+     * @param hMin the assessed min-entropy of the board, in bits per output bit.
+     */
+    HealthTests(double hMin)
+    {
+        double h = 8 * sanitize(hMin);
+
+        this.rctCutoff = repetitionCountCutoff(h, ALPHA_EXPONENT);
+        this.aptCutoff = adaptiveProportionCutoff(h, ALPHA_EXPONENT, WINDOW_SIZE);
+    }
+
+    /**
+     * Create the tests for a board, using the min-entropy the board reports.
+     *
+     * @param qrng  the device driver.
+     * @param index the board index.
+     * @return the tests for the board.
+     */
+    static HealthTests forBoard(QRNGDevice qrng, int index)
+    {
+        float[] hMin = new float[1];
+        try
+        {
+            if (qrng.getHmin(index, hMin) == 0)
+            {
+                return new HealthTests(hMin[0]);
+            }
+        }
+        catch (RuntimeException e)
+        {
+            // fall through to the default
+        }
+        return new HealthTests(DEFAULT_HMIN);
+    }
+
+    private static double sanitize(double hMin)
+    {
+        // NaN fails both comparisons
+        if (!(hMin > 0 && hMin <= 1))
+        {
+            return DEFAULT_HMIN;
+        }
+        // keep 2^-H away from 1 so the binomial tail stays well defined
+        return Math.max(hMin, 1.0 / 64);
+    }
+
+    /**
+     * Return the Repetition Count Test cutoff, C = 1 + ceil(alphaExponent / H).
+     *
+     * @param h             min-entropy per sample, in bits.
+     * @param alphaExponent false positive probability as a negative power of 2.
+     * @return the run length at which the test fails.
+     */
+    static int repetitionCountCutoff(double h, int alphaExponent)
+    {
+        return 1 + (int)Math.ceil(alphaExponent / h);
+    }
+
+    /**
+     * Return the Adaptive Proportion Test cutoff, C = 1 + CRITBINOM(W, 2^-H, 1 - alpha): one
+     * more than the smallest count whose binomial upper tail is at most alpha.
+     *
+     * @param h             min-entropy per sample, in bits.
+     * @param alphaExponent false positive probability as a negative power of 2.
+     * @param window        the window size W.
+     * @return the count at which the test fails.
+     */
+    static int adaptiveProportionCutoff(double h, int alphaExponent, int window)
+    {
+        double p = Math.pow(2, -h);
+        double alpha = Math.pow(2, -alphaExponent);
+
+        // the log of the probability mass function, built up from k = 0 to avoid factorials
+        double[] pmf = new double[window + 1];
+        double logPmf = window * Math.log1p(-p);
+        double logOdds = Math.log(p) - Math.log1p(-p);
+        for (int k = 0; k != window + 1; k++)
+        {
+            pmf[k] = Math.exp(logPmf);
+            logPmf += Math.log((double)(window - k) / (k + 1)) + logOdds;
+        }
+
+        // sum the upper tail from the top, the small terms first
+        double tail = 0;
+        int k = window;
+        while (k > 0 && tail + pmf[k] <= alpha)
+        {
+            tail += pmf[k];
+            k--;
+        }
+        return 1 + k;
+    }
+
+    int getRepetitionCountCutoff()
+    {
+        return rctCutoff;
+    }
+
+    int getAdaptiveProportionCutoff()
+    {
+        return aptCutoff;
+    }
+
+    /**
+     * Run the tests over len bytes of buf starting at off.
+     *
+     * @param buf the board output.
+     * @param off the start index.
+     * @param len number of bytes.
+     * @return true if both tests passed, false if either failed.
+     */
+    synchronized boolean test(byte[] buf, int off, int len)
+    {
+        return update(buf, off, off + len);
+    }
+
+    /**
+     * Run the tests over len bytes of a buffer starting at the absolute index off.
+     *
+     * @param buf the board output, its position is not changed.
+     * @param off the start index.
+     * @param len number of bytes.
+     * @return true if both tests passed, false if either failed.
+     */
+    synchronized boolean test(ByteBuffer buf, int off, int len)
+    {
+        if (buf.hasArray())
+        {
+            return update(buf.array(), buf.arrayOffset() + off, buf.arrayOffset() + off + len);
+        }
+
+        boolean passed = true;
+        for (int pos = 0; pos < len; pos += SCRATCH_SIZE)
+        {
+            int n = Math.min(SCRATCH_SIZE, len - pos);
+            for (int i = 0; i != n; i++)
+            {
+                scratch[i] = buf.get(off + pos + i);
+            }
+            passed &= update(scratch, 0, n);
+        }
+        return passed;
+    }
+
+    /**
+     * Run the tests over the first count words of a fetch, low byte of each word first.
+     *
+     * @param words the board output.
+     * @param count number of words.
+     * @return true if both tests passed, false if either failed.
+     */
+    synchronized boolean test(int[] words, int count)
+    {
+        boolean passed = true;
+        for (int pos = 0; pos < count; pos += SCRATCH_SIZE / 4)
+        {
+            int n = Math.min(SCRATCH_SIZE / 4, count - pos);
+            for (int i = 0; i != n; i++)
+            {
+                int w = words[pos + i];
+                scratch[4 * i] = (byte)w;
+                scratch[4 * i + 1] = (byte)(w >>> 8);
+                scratch[4 * i + 2] = (byte)(w >>> 16);
+                scratch[4 * i + 3] = (byte)(w >>> 24);
+            }
+            passed &= update(scratch, 0, 4 * n);
+        }
+        return passed;
+    }
+
+    /**
+     * Start both tests afresh, as after the board has been recalibrated.
+     */
+    synchronized void reset()
+    {
+        last = -1;
+        run = 0;
+        position = 0;
+        count = 0;
+    }
+
+    // called with the lock held. The per-sample work is two compares folded into conditional
+    // moves; cutoffs are only checked once per window or call.
+    private boolean update(byte[] buf, int from, int to)
+    {
+        int last = this.last;
+        int run = this.run;
+        int reference = this.reference;
+        int count = this.count;
+        int position = this.position;
+        int maxRun = 0;
+        int maxCount = 0;
+
+        for (int i = from; i < to; )
+        {
+            if (position == 0)
+            {
+                reference = buf[i] & 0xff;
+                count = 0;
+            }
+
+            int end = Math.min(to, i + (WINDOW_SIZE - position));
+            position = (position + end - i) & (WINDOW_SIZE - 1);
+            for (; i != end; i++)
+            {
+                int sample = buf[i] & 0xff;
+                run = (sample == last) ? run + 1 : 1;
+                count += (sample == reference) ? 1 : 0;
+                maxRun = Math.max(maxRun, run);
+                last = sample;
+            }
+            maxCount = Math.max(maxCount, count);
+        }
+
+        this.last = last;
+        this.run = run;
+        this.reference = reference;
+        this.count = count;
+        this.position = position;
+
+        return maxRun < rctCutoff && maxCount < aptCutoff;
+    }
+}
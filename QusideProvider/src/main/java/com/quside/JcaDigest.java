@@ -0,0 +1,87 @@
+package com.quside;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+
+/**
+ * Digest over a JCA MessageDigest, so the DRBGs and HMac can use the JDK's SHA-512, which recent
+ * JDKs back with CPU instructions.
+ * <p>
+ * The digest is deliberately not {@link Memoable}: a snapshot would have to be a
+ * MessageDigest.clone(), a new object on every HMac init, doFinal and reset. Without one HMac
+ * absorbs the pad block again instead, which costs one compression and allocates nothing.
+ * </p>
+ */
+class JcaDigest
+    implements Digest
+{
+    private final String algorithmName;
+    private final int byteLength;
+    private final MessageDigest digest;
+
+    /**
+     * Base constructor.
+     *
+     * @param algorithmName the name the rest of the module knows the digest by, e.g. "SHA-512".
+     * @param byteLength    size of the block the compression function works on, in bytes.
+     * @param digest        the MessageDigest to wrap.
+     */
+    JcaDigest(String algorithmName, int byteLength, MessageDigest digest)
+    {
+        this.algorithmName = algorithmName;
+        this.byteLength = byteLength;
+        this.digest = digest;
+    }
+
+    public String getAlgorithmName()
+    {
+        return algorithmName;
+    }
+
+    public int getDigestSize()
+    {
+        return digest.getDigestLength();
+    }
+
+    public void update(byte in)
+    {
+        digest.update(in);
+    }
+
+    public void update(byte[] in, int inOff, int len)
+    {
+        digest.update(in, inOff, len);
+    }
+
+    public int doFinal(byte[] out, int outOff)
+    {
+        try
+        {
+            return digest.digest(out, outOff, digest.getDigestLength());
+        }
+        catch (DigestException e)
+        {
+            throw new IllegalStateException("Unable to complete " + algorithmName + ": " + e.getMessage(), e);
+        }
+    }
+
+    public void reset()
+    {
+        digest.reset();
+    }
+
+    public int getByteLength()
+    {
+        return byteLength;
+    }
+
+    /**
+     * Return the provider the wrapped MessageDigest came from.
+     *
+     * @return the provider name.
+     */
+    String getProviderName()
+    {
+        return digest.getProvider().getName();
+    }
+}
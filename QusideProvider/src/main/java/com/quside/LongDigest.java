@@ -1,10 +1,9 @@
 package com.quside;
 
-import com.quside.util.Pack;
-
 class LongDigest
 {
     private static final int BYTE_LENGTH = 128;
+    private static final int WORD_LENGTH = 8;
 
     private byte[]  xBuf;
     private int     xBufOff;
@@ -57,7 +56,9 @@ class LongDigest
         H7 = t.H7;
         H8 = t.H8;
 
-        System.arraycopy(t.W, 0, W, 0, t.W.length);
+        // only the 16 message words carry state, processBlock() expands the rest and clears
+        // all 16 once done, so W[wOff..15] is always zero
+        System.arraycopy(t.W, 0, W, 0, 16);
         wOff = t.wOff;
     }
 
@@ -91,16 +92,43 @@ class LongDigest
             len--;
         }
 
+        //
+        // complete the current block a word at a time.
+        //
+        while ((wOff != 0) && (len >= WORD_LENGTH))
+        {
+            processWord(in, inOff);
+
+            inOff += WORD_LENGTH;
+            len -= WORD_LENGTH;
+            byteCount1 += WORD_LENGTH;
+        }
+
+        //
+        // process whole blocks straight from the input.
+        //
+        if (wOff == 0)
+        {
+            while (len >= BYTE_LENGTH)
+            {
+                processBlock(in, inOff);
+
+                inOff += BYTE_LENGTH;
+                len -= BYTE_LENGTH;
+                byteCount1 += BYTE_LENGTH;
+            }
+        }
+
         //
         // process whole words.
         //
-        while (len > xBuf.length)
+        while (len >= WORD_LENGTH)
         {
             processWord(in, inOff);
 
-            inOff += xBuf.length;
-            len -= xBuf.length;
-            byteCount1 += xBuf.length;
+            inOff += WORD_LENGTH;
+            len -= WORD_LENGTH;
+            byteCount1 += WORD_LENGTH;
         }
 
         //
@@ -148,8 +176,9 @@ class LongDigest
             xBuf[i] = 0;
         }
 
+        // W[16..79] is scratch, rewritten by every block
         wOff = 0;
-        for (int i = 0; i != W.length; i++)
+        for (int i = 0; i != 16; i++)
         {
             W[i] = 0;
         }
@@ -164,7 +193,7 @@ class LongDigest
             byte[]  in,
             int     inOff)
     {
-        W[wOff] = Pack.bigEndianToLong(in, inOff);
+        W[wOff] = BigEndian.getLong(in, inOff);
 
         if (++wOff == 16)
         {
@@ -198,10 +227,30 @@ class LongDigest
         W[15] = lowW;
     }
 
+    /**
+     * Process a whole block read straight from the input, only called on a block boundary.
+     */
+    private void processBlock(
+            byte[]  in,
+            int     inOff)
+    {
+        long[] w = W;
+        for (int t = 0; t != 16; t++)
+        {
+            w[t] = BigEndian.getLong(in, inOff + t * WORD_LENGTH);
+        }
+
+        processBlock();
+    }
+
     protected void processBlock()
     {
         adjustByteCounts();
 
+        // locals rather than fields, so the JIT can drop the bounds checks on both
+        final long[] W = this.W;
+        final long[] K = LongDigest.K;
+
         //
         // expand 16 word block into 80 word blocks.
         //
@@ -279,14 +328,14 @@ class LongDigest
         // reset the offset and clean out the word buffer.
         //
         wOff = 0;
-        for (int i = 0; i < 16; i++)
+        for (int i = 0; i != 16; i++)
         {
             W[i] = 0;
         }
     }
 
     /* SHA-384 and SHA-512 functions (as for SHA-256 but for longs) */
-    private long Ch(
+    private static long Ch(
             long    x,
             long    y,
             long    z)
@@ -294,7 +343,7 @@ class LongDigest
         return ((x & y) ^ ((~x) & z));
     }
 
-    private long Maj(
+    private static long Maj(
             long    x,
             long    y,
             long    z)
@@ -302,25 +351,25 @@ class LongDigest
         return ((x & y) ^ (x & z) ^ (y & z));
     }
 
-    private long Sum0(
+    private static long Sum0(
             long    x)
     {
         return ((x << 36)|(x >>> 28)) ^ ((x << 30)|(x >>> 34)) ^ ((x << 25)|(x >>> 39));
     }
 
-    private long Sum1(
+    private static long Sum1(
             long    x)
     {
         return ((x << 50)|(x >>> 14)) ^ ((x << 46)|(x >>> 18)) ^ ((x << 23)|(x >>> 41));
     }
 
-    private long Sigma0(
+    private static long Sigma0(
             long    x)
     {
         return ((x << 63)|(x >>> 1)) ^ ((x << 56)|(x >>> 8)) ^ (x >>> 7);
     }
 
-    private long Sigma1(
+    private static long Sigma1(
             long    x)
     {
         return ((x << 45)|(x >>> 19)) ^ ((x << 3)|(x >>> 61)) ^ (x >>> 6);
@@ -0,0 +1,224 @@
+package com.quside;
+
+import com.quside.util.Pack;
+import com.quside.util.Strings;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * HMAC-SHA512 over the classes and resources of the module jar.
+ * <p>
+ * Every entry outside META-INF (bar the multi-release versions) is MACed on its own, in
+ * parallel on the common fork/join pool, as HMAC('[' || name || size || ']' || contents).
+ * The module MAC is then the HMAC of the entry MACs, in entry name order, followed by "[END]".
+ * Results are cached by jar path, size and modification time, so asking again for an unchanged
+ * jar costs a stat of the file.
+ * </p>
+ */
+final class ModuleChecksum
+{
+    private static final byte[] END = Strings.toByteArray("[END]");
+
+    private static final Map<String, Result> cache = new ConcurrentHashMap<String, Result>();
+
+    private static volatile long lastElapsedNanos = -1;
+
+    private ModuleChecksum()
+    {
+    }
+
+    /**
+     * Return the module MAC of a jar, calculating it only if the jar is new or has changed
+     * since it was last calculated.
+     *
+     * @param jarName path of the jar file.
+     * @param key     the HMAC key.
+     * @return the MAC.
+     * @throws IOException if the jar cannot be read.
+     * @throws IllegalStateException if the jar has duplicate entries.
+     */
+    static byte[] calculate(String jarName, byte[] key)
+        throws IOException
+    {
+        File file = new File(jarName);
+        String path = file.getCanonicalPath();
+        long size = file.length();
+        long modified = file.lastModified();
+
+        Result cached = cache.get(path);
+        if (cached != null && cached.size == size && cached.modified == modified)
+        {
+            return cached.mac.clone();
+        }
+
+        long start = System.nanoTime();
+        byte[] mac;
+        JarFile jarFile = new JarFile(file);
+        try
+        {
+            mac = calculate(jarFile, key);
+        }
+        finally
+        {
+            jarFile.close();
+        }
+        lastElapsedNanos = System.nanoTime() - start;
+
+        cache.put(path, new Result(size, modified, mac));
+
+        return mac.clone();
+    }
+
+    /**
+     * Return the time the last calculation that was not answered from the cache took.
+     *
+     * @return the elapsed time in nanoseconds, -1 if nothing has been calculated yet.
+     */
+    static long getLastElapsedNanos()
+    {
+        return lastElapsedNanos;
+    }
+
+    static byte[] calculate(final JarFile jarFile, final byte[] key)
+        throws IOException
+    {
+        // build an index to make sure we get things in the same order.
+        Map<String, JarEntry> index = new TreeMap<String, JarEntry>();
+
+        for (Enumeration<JarEntry> entries = jarFile.entries(); entries.hasMoreElements(); )
+        {
+            JarEntry jarEntry = entries.nextElement();
+
+            // Skip directories, META-INF, and module-info.class meta-data
+            if (jarEntry.isDirectory()
+                    || (jarEntry.getName().startsWith("META-INF/") && jarEntry.getName().indexOf("versions") < 0)
+                    || jarEntry.getName().indexOf("module-info.class") > 0)
+            {
+                continue;
+            }
+
+            Object last = index.put(jarEntry.getName(), jarEntry);
+            if (last != null)
+            {
+                throw new IllegalStateException("Unable to initialize module: duplicate entry found in jar file");
+            }
+        }
+
+        List<Callable<byte[]>> tasks = new ArrayList<Callable<byte[]>>(index.size());
+        for (final JarEntry jarEntry : index.values())
+        {
+            tasks.add(new Callable<byte[]>()
+            {
+                public byte[] call()
+                    throws IOException
+                {
+                    return entryMac(jarFile, jarEntry, key);
+                }
+            });
+        }
+
+        HMac hMac = newMac(key);
+        byte[] entryMacs = new byte[hMac.getMacSize()];
+        for (Future<byte[]> result : ForkJoinPool.commonPool().invokeAll(tasks))
+        {
+            try
+            {
+                hMac.update(result.get(), 0, entryMacs.length);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while calculating module checksum", e);
+            }
+            catch (ExecutionException e)
+            {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException)
+                {
+                    throw (IOException)cause;
+                }
+                throw new IllegalStateException("Unable to calculate module checksum: " + cause.getMessage(), cause);
+            }
+        }
+
+        hMac.update(END, 0, END.length);
+
+        byte[] hmacResult = new byte[hMac.getMacSize()];
+
+        hMac.doFinal(hmacResult, 0);
+
+        return hmacResult;
+    }
+
+    private static byte[] entryMac(JarFile jarFile, JarEntry jarEntry, byte[] key)
+        throws IOException
+    {
+        HMac hMac = newMac(key);
+
+        // header information
+        byte[] encName = Strings.toUTF8ByteArray(jarEntry.getName());
+        hMac.update((byte) 0x5B);   // '['
+        hMac.update(encName, 0, encName.length);
+        hMac.update(Pack.longToBigEndian(jarEntry.getSize()), 0, 8);
+        hMac.update((byte) 0x5D);    // ']'
+
+        // contents. A SecurityException will be thrown if a signature/digest check fails
+        byte[] buf = new byte[8192];
+        InputStream is = jarFile.getInputStream(jarEntry);
+        try
+        {
+            int n;
+            while ((n = is.read(buf, 0, buf.length)) != -1)
+            {
+                hMac.update(buf, 0, n);
+            }
+        }
+        finally
+        {
+            is.close();
+        }
+
+        byte[] mac = new byte[hMac.getMacSize()];
+
+        hMac.doFinal(mac, 0);
+
+        return mac;
+    }
+
+    private static HMac newMac(byte[] key)
+    {
+        HMac hMac = new HMac(DigestFactory.createSHA512());
+
+        hMac.init(new KeyParameter(key));
+
+        return hMac;
+    }
+
+    private static final class Result
+    {
+        private final long size;
+        private final long modified;
+        private final byte[] mac;
+
+        Result(long size, long modified, byte[] mac)
+        {
+            this.size = size;
+            this.modified = modified;
+            this.mac = mac;
+        }
+    }
+}
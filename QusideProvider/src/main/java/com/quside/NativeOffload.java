@@ -0,0 +1,43 @@
+package com.quside;
+
+import java.util.function.IntSupplier;
+
+/**
+ * Hand-off point for blocking device calls.
+ * <p>
+ * On Java 8 to 20 device calls always run on the calling thread. The multi-release layer in
+ * META-INF/versions/21 replaces this class with one that moves calls made from virtual threads
+ * onto a small pool of platform threads, so that a virtual thread waiting for the device parks
+ * instead of pinning its carrier for the whole transfer.
+ * </p>
+ */
+final class NativeOffload
+{
+    static final String ENABLED_PROPERTY = "com.quside.offload";
+    static final String THREADS_PROPERTY = "com.quside.offload.threads";
+
+    private NativeOffload()
+    {
+    }
+
+    /**
+     * Return whether device calls made by the current thread should go through {@link #call(IntSupplier)}.
+     *
+     * @return always false before Java 21.
+     */
+    static boolean isRequired()
+    {
+        return false;
+    }
+
+    /**
+     * Run a device call.
+     *
+     * @param deviceCall the blocking native call.
+     * @return the status returned by the call.
+     */
+    static int call(IntSupplier deviceCall)
+    {
+        return deviceCall.getAsInt();
+    }
+}
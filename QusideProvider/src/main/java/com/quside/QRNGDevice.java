@@ -0,0 +1,52 @@
+package com.quside;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Method surface of a QRNG device driver, as exposed by the native library.
+ * <p>
+ * The default implementation is {@link QusideQRNG}. Setting the com.quside.device property to
+ * "simulated" selects {@link SimulatedQRNG} instead, a pure Java stand-in that does not need
+ * the native library or any hardware.
+ * </p>
+ */
+interface QRNGDevice
+{
+    String DEVICE_PROPERTY = "com.quside.device";
+
+    /**
+     * Return the number of boards attached.
+     *
+     * @return the board count.
+     */
+    int findBoards();
+
+    /**
+     * Fill the first Nuint32 entries of memSlot from board devInd.
+     *
+     * @return 0 on success, non-zero on failure.
+     */
+    int getRandom(int[] memSlot, int Nuint32, int devInd);
+
+    /**
+     * Fill len bytes of dest starting at off from board devInd.
+     *
+     * @return 0 on success, non-zero on failure.
+     */
+    int getRandomBytes(byte[] dest, int off, int len, int devInd);
+
+    /**
+     * Fill len bytes of the direct buffer dest starting at the absolute index off from board devInd.
+     *
+     * @return 0 on success, non-zero on failure.
+     */
+    int getRandomBuffer(ByteBuffer dest, int off, int len, int devInd);
+
+    int qualityQFactor(int devInd, float[] qFactor);
+
+    int getHmin(int devInd, float[] hMin);
+
+    int getCalibrationStatus(int devInd, int[] status);
+
+    int setCalibration(int devInd);
+}
@@ -0,0 +1,479 @@
+package com.quside;
+
+import com.quside.util.Properties;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+
+/**
+ * Pool of every QRNG board reported by the native library.
+ * <p>
+ * Requests below the stripe threshold are served on the calling thread by the least loaded
+ * board, ties going round-robin. Larger requests are split into block aligned stripes, one
+ * per board, and read in parallel by a dedicated worker thread per board. Only boards the
+ * {@link QRNGDeviceRegistry} reports as calibrated are used. Reads made from virtual threads go
+ * through {@link NativeOffload}.
+ * </p>
+ * <p>
+ * Unless com.quside.health is set to false, every read is run through the SP 800-90B continuous
+ * health tests of its board, see {@link HealthTests}. Output that fails is discarded, the board
+ * is reported to the registry, which holds it out of use until it has been recalibrated, and the
+ * request is served again from the remaining boards.
+ * </p>
+ */
+class QRNGDevicePool
+{
+    static final String STRIPE_THRESHOLD_PROPERTY = "com.quside.pool.stripeThreshold";
+    static final String HEALTH_PROPERTY = "com.quside.health";
+
+    private static final int BLOCK_BYTES = 512;
+    private static final int DEFAULT_STRIPE_THRESHOLD = 64 * 1024;
+
+    private static final Object poolLock = new Object();
+    private static volatile QRNGDevicePool instance;
+
+    private final QRNGDeviceRegistry registry;
+    private final QRNGDevice qrng;
+    private final Board[] boards;
+    private final int stripeThreshold;
+    private final AtomicInteger nextBoard = new AtomicInteger();
+
+    QRNGDevicePool(QRNGDeviceRegistry registry, int stripeThreshold, boolean healthTests)
+    {
+        int numBoards = registry.getBoardCount();
+
+        this.registry = registry;
+        this.qrng = registry.getQRNG();
+        this.boards = new Board[numBoards];
+        for (int i = 0; i != numBoards; i++)
+        {
+            boards[i] = new Board(i, healthTests ? HealthTests.forBoard(qrng, i) : null);
+        }
+        this.stripeThreshold = Math.max(stripeThreshold, BLOCK_BYTES);
+    }
+
+    /**
+     * Return the process wide pool, enumerating the boards on first use.
+     *
+     * @return the device pool.
+     */
+    static QRNGDevicePool getInstance()
+    {
+        QRNGDevicePool pool = instance;
+        if (pool == null)
+        {
+            synchronized (poolLock)
+            {
+                pool = instance;
+                if (pool == null)
+                {
+                    pool = new QRNGDevicePool(QRNGDeviceRegistry.getInstance(),
+                        Properties.asInteger(STRIPE_THRESHOLD_PROPERTY, DEFAULT_STRIPE_THRESHOLD),
+                        Properties.isOverrideSet(HEALTH_PROPERTY, true));
+                    instance = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    int getBoardCount()
+    {
+        return boards.length;
+    }
+
+    /**
+     * Return a snapshot of the per-board statistics.
+     *
+     * @return one entry per board, in device index order.
+     */
+    List<BoardStatistics> getStatistics()
+    {
+        List<BoardStatistics> stats = new ArrayList<BoardStatistics>(boards.length);
+        for (int i = 0; i != boards.length; i++)
+        {
+            stats.add(boards[i].getStatistics());
+        }
+        return stats;
+    }
+
+    /**
+     * Fill len bytes of dest starting at off with random data.
+     *
+     * @param dest the target array.
+     * @param off  the start index.
+     * @param len  number of bytes.
+     */
+    void fill(byte[] dest, int off, int len)
+    {
+        fill(dest, null, off, len);
+    }
+
+    /**
+     * Fill len bytes of a direct buffer starting at the absolute index off with random data.
+     *
+     * @param dest the target buffer, its position is not changed.
+     * @param off  the start index.
+     * @param len  number of bytes.
+     */
+    void fill(ByteBuffer dest, int off, int len)
+    {
+        fill(null, dest, off, len);
+    }
+
+    /**
+     * Fill the first count entries of words from a single board.
+     *
+     * @param words the target array.
+     * @param count the number of words required.
+     * @return 0 on success, non-zero on failure, including output that failed the health tests.
+     */
+    int fetch(int[] words, int count)
+    {
+        Board board = select();
+        if (board == null)
+        {
+            return -1;
+        }
+        return board.fetch(words, count);
+    }
+
+    private void fill(byte[] array, ByteBuffer buffer, int off, int len)
+    {
+        boolean passed = false;
+        try
+        {
+            // every failed attempt takes a board out, unless it recalibrates straight away
+            for (int attempt = 0; attempt <= boards.length && !passed; attempt++)
+            {
+                passed = fillOnce(array, buffer, off, len);
+                if (!passed && !anyReady())
+                {
+                    break;
+                }
+            }
+        }
+        finally
+        {
+            // never leave output that failed, or a partial read, in the caller's hands
+            if (!passed)
+            {
+                clear(array, buffer, off, len);
+            }
+        }
+        if (!passed)
+        {
+            throw new IllegalStateException("QRNG output failed the continuous health tests");
+        }
+    }
+
+    private boolean anyReady()
+    {
+        for (int i = 0; i != boards.length; i++)
+        {
+            if (registry.isReady(i))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void clear(byte[] array, ByteBuffer buffer, int off, int len)
+    {
+        if (array != null)
+        {
+            Arrays.fill(array, off, off + len, (byte)0);
+        }
+        else
+        {
+            for (int i = 0; i != len; i++)
+            {
+                buffer.put(off + i, (byte)0);
+            }
+        }
+    }
+
+    /**
+     * @return true if the output passed the health tests of every board involved.
+     */
+    private boolean fillOnce(byte[] array, ByteBuffer buffer, int off, int len)
+    {
+        if (len < stripeThreshold || boards.length == 1)
+        {
+            Board board = select();
+            if (board == null)
+            {
+                throw new UnsupportedOperationException("QRNG is not calibrated");
+            }
+            return board.fill(array, buffer, off, len);
+        }
+
+        List<Board> ready = new ArrayList<Board>(boards.length);
+        for (int i = 0; i != boards.length; i++)
+        {
+            if (registry.isReady(i))
+            {
+                ready.add(boards[i]);
+            }
+        }
+        if (ready.isEmpty())
+        {
+            throw new UnsupportedOperationException("QRNG is not calibrated");
+        }
+
+        int stripe = ((len + ready.size() - 1) / ready.size() + BLOCK_BYTES - 1) & ~(BLOCK_BYTES - 1);
+        List<Future<Boolean>> parts = new ArrayList<Future<Boolean>>(ready.size());
+        for (int i = 0, pos = 0; pos < len; i++, pos += stripe)
+        {
+            parts.add(ready.get(i).submit(array, buffer, off + pos, Math.min(stripe, len - pos)));
+        }
+
+        return await(parts);
+    }
+
+    private static boolean await(List<Future<Boolean>> parts)
+    {
+        try
+        {
+            boolean passed = true;
+            for (int i = 0; i != parts.size(); i++)
+            {
+                passed &= parts.get(i).get();
+            }
+            return passed;
+        }
+        catch (ExecutionException e)
+        {
+            cancel(parts);
+            if (e.getCause() instanceof RuntimeException)
+            {
+                throw (RuntimeException)e.getCause();
+            }
+            throw new IllegalStateException("QRNG read failed", e.getCause());
+        }
+        catch (InterruptedException e)
+        {
+            cancel(parts);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for QRNG", e);
+        }
+    }
+
+    private static void cancel(List<Future<Boolean>> parts)
+    {
+        for (int i = 0; i != parts.size(); i++)
+        {
+            parts.get(i).cancel(false);
+        }
+    }
+
+    /**
+     * Pick the calibrated board with the fewest reads in flight, starting from a round-robin
+     * position so that idle boards share the load evenly.
+     *
+     * @return the selected board, null if no board is calibrated.
+     */
+    private Board select()
+    {
+        int n = boards.length;
+        if (n == 1)
+        {
+            return registry.isReady(0) ? boards[0] : null;
+        }
+
+        int start = (nextBoard.getAndIncrement() & 0x7fffffff) % n;
+        Board best = null;
+        for (int i = 0; i != n; i++)
+        {
+            int index = (start + i) % n;
+            if (!registry.isReady(index))
+            {
+                continue;
+            }
+
+            Board b = boards[index];
+            if (best == null || b.inFlight.get() < best.inFlight.get())
+            {
+                best = b;
+                if (b.inFlight.get() == 0)
+                {
+                    break;
+                }
+            }
+        }
+        return best;
+    }
+
+    private class Board
+    {
+        private final int index;
+        private final HealthTests health;
+        private final ExecutorService worker;
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong busyNanos = new AtomicLong();
+        private final AtomicLong healthFailures = new AtomicLong();
+
+        Board(final int index, HealthTests health)
+        {
+            this.index = index;
+            this.health = health;
+            this.worker = Executors.newSingleThreadExecutor(new ThreadFactory()
+            {
+                public Thread newThread(Runnable r)
+                {
+                    Thread t = new Thread(r, "Quside-Board-" + index);
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+
+        Future<Boolean> submit(final byte[] array, final ByteBuffer buffer, final int off, final int len)
+        {
+            return worker.submit(new Callable<Boolean>()
+            {
+                public Boolean call()
+                {
+                    return fill(array, buffer, off, len);
+                }
+            });
+        }
+
+        /**
+         * @return true if the output passed the health tests.
+         */
+        boolean fill(final byte[] array, final ByteBuffer buffer, final int off, final int len)
+        {
+            int ret;
+            long start = begin();
+            try
+            {
+                if (NativeOffload.isRequired())
+                {
+                    ret = NativeOffload.call(new IntSupplier()
+                    {
+                        public int getAsInt()
+                        {
+                            return read(array, buffer, off, len);
+                        }
+                    });
+                }
+                else
+                {
+                    ret = read(array, buffer, off, len);
+                }
+            }
+            finally
+            {
+                end(start);
+            }
+
+            complete(ret, len);
+            if (ret != 0)
+            {
+                throw new IllegalStateException("QRNG read failed on board " + index);
+            }
+
+            return health == null
+                || checkHealth((array != null) ? health.test(array, off, len) : health.test(buffer, off, len));
+        }
+
+        int fetch(final int[] words, final int count)
+        {
+            int ret;
+            long start = begin();
+            try
+            {
+                if (NativeOffload.isRequired())
+                {
+                    ret = NativeOffload.call(new IntSupplier()
+                    {
+                        public int getAsInt()
+                        {
+                            return qrng.getRandom(words, count, index);
+                        }
+                    });
+                }
+                else
+                {
+                    ret = qrng.getRandom(words, count, index);
+                }
+            }
+            finally
+            {
+                end(start);
+            }
+
+            complete(ret, count * 4);
+            if (ret == 0 && health != null && !checkHealth(health.test(words, count)))
+            {
+                return -1;
+            }
+            return ret;
+        }
+
+        private boolean checkHealth(boolean passed)
+        {
+            if (!passed)
+            {
+                healthFailures.incrementAndGet();
+                health.reset();
+                registry.reportHealthFailure(index);
+            }
+            return passed;
+        }
+
+        private int read(byte[] array, ByteBuffer buffer, int off, int len)
+        {
+            return (array != null) ? qrng.getRandomBytes(array, off, len, index) : qrng.getRandomBuffer(buffer, off, len, index);
+        }
+
+        private long begin()
+        {
+            inFlight.incrementAndGet();
+            return System.nanoTime();
+        }
+
+        private void end(long start)
+        {
+            busyNanos.addAndGet(System.nanoTime() - start);
+            inFlight.decrementAndGet();
+        }
+
+        private void complete(int ret, int len)
+        {
+            requests.incrementAndGet();
+            if (ret == 0)
+            {
+                bytes.addAndGet(len);
+            }
+            else
+            {
+                errors.incrementAndGet();
+                registry.reportError(index);
+            }
+        }
+
+        BoardStatistics getStatistics()
+        {
+            return new BoardStatistics(index, registry.getStatus(index), requests.get(), bytes.get(), errors.get(), busyNanos.get(), inFlight.get(),
+                healthFailures.get(), !registry.isHealthFailed(index));
+        }
+    }
+}
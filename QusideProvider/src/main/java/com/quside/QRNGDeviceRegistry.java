@@ -0,0 +1,294 @@
+package com.quside;
+
+import com.quside.util.Properties;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Process wide registry of the QRNG boards.
+ * <p>
+ * The boards are enumerated once. The calibration status of each board is cached in a volatile
+ * field, polled on a timer and re-read straight after a failed fetch, so that the request path
+ * only needs a field read to know whether a board can be used. A board whose output fails the
+ * continuous health tests is held out of use and recalibrated in the background. The boards are
+ * driven through the {@link QRNGDevice} selected by the com.quside.device property.
+ * </p>
+ */
+class QRNGDeviceRegistry
+{
+    static final String REFRESH_PROPERTY = "com.quside.registry.refreshMillis";
+
+    private static final int DEFAULT_REFRESH_MILLIS = 1000;
+
+    // backoff between refused recalibrations of a board that failed its health tests
+    static final long MIN_RECALIBRATION_MILLIS = 100;
+    static final long MAX_RECALIBRATION_MILLIS = 60 * 1000;
+
+    private static final Object registryLock = new Object();
+    private static volatile QRNGDeviceRegistry instance;
+
+    private final QRNGDevice qrng;
+    private final Device[] devices;
+    private final ScheduledExecutorService refresher;
+    private final AtomicBoolean refreshPending = new AtomicBoolean();
+
+    QRNGDeviceRegistry(QRNGDevice qrng, int numBoards, long refreshMillis)
+    {
+        this.qrng = qrng;
+        this.devices = new Device[numBoards];
+        for (int i = 0; i != numBoards; i++)
+        {
+            devices[i] = new Device(i);
+        }
+
+        refresh();
+
+        this.refresher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+        {
+            public Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r, "Quside-Registry");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        if (refreshMillis > 0)
+        {
+            refresher.scheduleWithFixedDelay(new Runnable()
+            {
+                public void run()
+                {
+                    refresh();
+                }
+            }, refreshMillis, refreshMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Return the registry, enumerating the boards on first use.
+     *
+     * @return the device registry.
+     */
+    static QRNGDeviceRegistry getInstance()
+    {
+        QRNGDeviceRegistry registry = instance;
+        if (registry == null)
+        {
+            synchronized (registryLock)
+            {
+                registry = instance;
+                if (registry == null)
+                {
+                    QRNGDevice qrng = openDevice();
+                    int numBoards = qrng.findBoards();
+                    if (numBoards == 0)
+                    {
+                        throw new UnsupportedOperationException("No QRNG boards found");
+                    }
+
+                    registry = new QRNGDeviceRegistry(qrng, numBoards,
+                        Properties.asInteger(REFRESH_PROPERTY, DEFAULT_REFRESH_MILLIS));
+                    instance = registry;
+                }
+            }
+        }
+        return registry;
+    }
+
+    /**
+     * Create the device named by the com.quside.device property, the native library unless
+     * "simulated" is requested.
+     *
+     * @return a new device.
+     */
+    private static QRNGDevice openDevice()
+    {
+        String name = Properties.getPropertyValue(QRNGDevice.DEVICE_PROPERTY, "native").trim();
+
+        if ("simulated".equalsIgnoreCase(name))
+        {
+            return SimulatedQRNG.fromProperties();
+        }
+        if ("native".equalsIgnoreCase(name))
+        {
+            return new QusideQRNG();
+        }
+        throw new IllegalArgumentException("Unknown QRNG device: " + name);
+    }
+
+    QRNGDevice getQRNG()
+    {
+        return qrng;
+    }
+
+    int getBoardCount()
+    {
+        return devices.length;
+    }
+
+    /**
+     * Return the cached calibration status of a board.
+     *
+     * @param index the device index.
+     * @return the last status read from the board.
+     */
+    CalibrationStatus getStatus(int index)
+    {
+        return devices[index].status;
+    }
+
+    boolean isReady(int index)
+    {
+        Device device = devices[index];
+        return device.status == CalibrationStatus.CALIB_SUCCED && !device.healthFailed;
+    }
+
+    /**
+     * Return whether a board is held out of use after failing the continuous health tests.
+     *
+     * @param index the device index.
+     * @return true until the board has been recalibrated.
+     */
+    boolean isHealthFailed(int index)
+    {
+        return devices[index].healthFailed;
+    }
+
+    /**
+     * Take a board out of use after its output failed the continuous health tests. The board
+     * is recalibrated in the background and comes back once calibration succeeds; a refused
+     * recalibration is retried, backing off from MIN_RECALIBRATION_MILLIS up to
+     * MAX_RECALIBRATION_MILLIS.
+     *
+     * @param index the device index.
+     */
+    void reportHealthFailure(final int index)
+    {
+        Device device = devices[index];
+        synchronized (device)
+        {
+            if (device.healthFailed)
+            {
+                return;
+            }
+            device.healthFailed = true;
+        }
+
+        recalibrate(index, 0);
+    }
+
+    private void recalibrate(final int index, final long delayMillis)
+    {
+        refresher.schedule(new Runnable()
+        {
+            public void run()
+            {
+                int ret;
+                try
+                {
+                    ret = calibrate(index);
+                }
+                catch (RuntimeException e)
+                {
+                    ret = -1;
+                }
+
+                if (ret != 0 && devices[index].healthFailed)
+                {
+                    recalibrate(index, Math.min(Math.max(MIN_RECALIBRATION_MILLIS, delayMillis * 2), MAX_RECALIBRATION_MILLIS));
+                }
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Note a failed fetch on a board, its status is re-read in the background.
+     *
+     * @param index the device index.
+     */
+    void reportError(int index)
+    {
+        if (refreshPending.compareAndSet(false, true))
+        {
+            refresher.execute(new Runnable()
+            {
+                public void run()
+                {
+                    refreshPending.set(false);
+                    refresh();
+                }
+            });
+        }
+    }
+
+    /**
+     * Ask a board to recalibrate. The board is taken out of use until a later refresh
+     * reports that calibration succeeded. An accepted request clears a health test failure.
+     *
+     * @param index the device index.
+     * @return 0 on success, non-zero if the request was refused.
+     */
+    int calibrate(int index)
+    {
+        Device device = devices[index];
+        synchronized (device)
+        {
+            device.status = CalibrationStatus.CALIBRATING;
+            int ret = qrng.setCalibration(index);
+            if (ret == 0)
+            {
+                device.healthFailed = false;
+            }
+            device.refresh();
+            return ret;
+        }
+    }
+
+    /**
+     * Re-read the calibration status of every board.
+     */
+    void refresh()
+    {
+        for (int i = 0; i != devices.length; i++)
+        {
+            Device device = devices[i];
+            synchronized (device)
+            {
+                device.refresh();
+            }
+        }
+    }
+
+    private class Device
+    {
+        private final int index;
+        private final int[] code = new int[1];
+        private volatile CalibrationStatus status = CalibrationStatus.DEFAULT;
+        private volatile boolean healthFailed;
+
+        Device(int index)
+        {
+            this.index = index;
+        }
+
+        // called with the device lock held
+        void refresh()
+        {
+            CalibrationStatus next;
+            try
+            {
+                next = (qrng.getCalibrationStatus(index, code) == 0)
+                    ? CalibrationStatus.fromCode(code[0]) : CalibrationStatus.I2C_ERROR;
+            }
+            catch (RuntimeException e)
+            {
+                next = CalibrationStatus.I2C_ERROR;
+            }
+            status = next;
+        }
+    }
+}
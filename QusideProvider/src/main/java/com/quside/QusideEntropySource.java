@@ -1,21 +1,25 @@
 package com.quside;
 
+import java.nio.ByteBuffer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * JitterEntropySource
  * !! IF YOU RENAME THIS CLASS you will need to adjust jent_jni.c
  */
-class QusideEntropySource implements EntropySource
+public class QusideEntropySource implements EntropySource
 {
-    private static QusideQRNG qes;
     private static final Object jentLock = new Object();
+    private static final EntropyHarvester harvester;
 
     private final int byteSize;
 
     static {
-        qes = new QusideQRNG();
+        harvester = EntropyHarvester.isEnabled() ? EntropyHarvester.fromProperties(new DeviceWordSource()).start() : null;
     }
 
-    QusideEntropySource() {
+    public QusideEntropySource() {
         this.byteSize = 32;
     }
 
@@ -37,11 +41,12 @@ class QusideEntropySource implements EntropySource
     @Override
     public int entropySize()
     {
-        return byteSize;
+        return byteSize * 8;
     }
 
     /**
-     * Get random bytes,retrying until buffer is full.
+     * Get random bytes,retrying until buffer is full. Only dest[start, start + len) is
+     * written and no garbage is created.
      *
      * @param dest  the target array
      * @param start the start index
@@ -52,34 +57,46 @@ class QusideEntropySource implements EntropySource
     {
         // TODO: Check that the QRNG library is loaded.
 
-        int numBoards = qes.findBoards();
-        if (numBoards == 0) {
-            throw new UnsupportedOperationException("No QRNG boards found");
+        if (start < 0 || len < 0 || start > dest.length - len)
+        {
+            throw new ArrayIndexOutOfBoundsException("start/len outside of dest");
         }
 
-        int[] status = new int[1];
-        qes.getCalibrationStatus(0, status);
+        if (harvester != null && harvester.take(dest, start, len))
+        {
+            return len;
+        }
 
-        int Nuint32 = dest.length / 4;
-        int[] memSlot = new int[Nuint32];
+        QRNGDevicePool.getInstance().fill(dest, start, len);
 
-        if (status[0] == 2) {
-            qes.getRandom(memSlot, Nuint32, 0);
-        } else {
-            throw new UnsupportedOperationException("QRNG is not calibrated");
-        }
+        return len;
+    }
 
-        for (int i = 0; i < Nuint32; i++) {
-            dest[i * 4] = (byte) (memSlot[i] & 0xFF);
-            dest[i * 4 + 1] = (byte) ((memSlot[i] >> 8) & 0xFF);
-            dest[i * 4 + 2] = (byte) ((memSlot[i] >> 16) & 0xFF);
-            dest[i * 4 + 3] = (byte) ((memSlot[i] >> 24) & 0xFF);
+    /**
+     * Fill the remaining bytes of a buffer with random data. Direct buffers are
+     * written in place by the native library.
+     *
+     * @param dest the target buffer, its position is advanced to its limit.
+     * @return the amount read.
+     */
+    long getRandomBytes(ByteBuffer dest)
+    {
+        int len = dest.remaining();
+
+        if (dest.hasArray())
+        {
+            getRandomBytes(dest.array(), dest.arrayOffset() + dest.position(), len);
+        }
+        else
+        {
+            QRNGDevicePool.getInstance().fill(dest, dest.position(), len);
         }
 
+        dest.position(dest.limit());
+
         return len;
     }
 
-
     /**
      * Get random bytes,retrying until buffer is full.
      *
@@ -91,6 +108,52 @@ class QusideEntropySource implements EntropySource
         return getRandomBytes(dest, 0, dest.length);
     }
 
+    /**
+     * Fetch entropy without blocking the calling thread. The device read runs on a
+     * dedicated fetch thread, see {@link EntropyFetchExecutor}.
+     *
+     * @param len number of bytes.
+     * @return a future completed with len random bytes, or exceptionally if the fetch queue
+     * is full or the read fails.
+     */
+    public CompletableFuture<byte[]> getEntropyAsync(final int len)
+    {
+        if (len < 0)
+        {
+            throw new IllegalArgumentException("len must not be negative");
+        }
+
+        return EntropyFetchExecutor.getInstance().submit(new Callable<byte[]>()
+        {
+            public byte[] call()
+            {
+                byte[] entropy = new byte[len];
+                getRandomBytes(entropy, 0, len);
+                return entropy;
+            }
+        });
+    }
+
+    /**
+     * Fill the remaining bytes of a buffer without blocking the calling thread. The buffer
+     * must not be touched until the future completes.
+     *
+     * @param dest the target buffer, its position is advanced to its limit on completion.
+     * @return a future completed with dest, or exceptionally if the fetch queue is full or
+     * the read fails.
+     */
+    public CompletableFuture<ByteBuffer> getRandomBytesAsync(final ByteBuffer dest)
+    {
+        return EntropyFetchExecutor.getInstance().submit(new Callable<ByteBuffer>()
+        {
+            public ByteBuffer call()
+            {
+                getRandomBytes(dest);
+                return dest;
+            }
+        });
+    }
+
     /**
      * Returns true of the native rng is available.
      *
@@ -112,7 +175,15 @@ class QusideEntropySource implements EntropySource
         }
     }
 
-
-
-
+    /**
+     * Feeds the harvester threads from the device pool.
+     */
+    private static class DeviceWordSource
+        implements EntropyHarvester.WordSource
+    {
+        public int fetch(int[] words, int count)
+        {
+            return QRNGDevicePool.getInstance().fetch(words, count);
+        }
+    }
 }
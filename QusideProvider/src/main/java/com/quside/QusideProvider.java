@@ -2,6 +2,10 @@ package com.quside;
 import java.security.Provider;
 
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 public class QusideProvider extends Provider {
 
@@ -9,30 +13,102 @@ public class QusideProvider extends Provider {
     private static final double VERSION = 0.1;
     public static final String NAME = "Quside";
 
+    private final ReseedPolicy reseedPolicy;
+
+    // SecureRandom services by upper case algorithm name and alias, built once and never changed
+    private final Map<String, Service> secureRandomServices;
+
     public QusideProvider() {
+        this(ReseedPolicy.fromProperties());
+    }
+
+    /**
+     * Create a provider whose QRNG SecureRandom follows the given reseed policy.
+     *
+     * @param reseedPolicy "always", "calls:N", "bytes:N" or "millis:T", see {@link ReseedPolicy}.
+     */
+    public QusideProvider(String reseedPolicy) {
+        this(ReseedPolicy.parse(reseedPolicy));
+    }
+
+    private QusideProvider(ReseedPolicy reseedPolicy) {
         super(NAME, VERSION, INFO);
-        putService(new QesService(this));
-        putService(new QrngService(this));
+        this.reseedPolicy = reseedPolicy;
+
+        Map<String, Service> services = new HashMap<String, Service>();
+        register(services, new QesService(this), Collections.<String>emptyList());
+        for (DRBGMechanism mechanism : DRBGMechanism.values()) {
+            register(services, new QrngService(this, mechanism), mechanism.getAliases());
+        }
+        this.secureRandomServices = Collections.unmodifiableMap(services);
+
+        EntropyProviderStatus.powerOn();
+    }
+
+    /**
+     * Return a copy of this provider configured with a new reseed policy. From Java 9 this is
+     * reached through Provider.configure(), e.g. from a java.security entry of the form
+     * "security.provider.N=com.quside.QusideProvider calls:1000".
+     *
+     * @param configArg the reseed policy, optionally prefixed with "--".
+     * @return a new provider.
+     */
+    public Provider configure(String configArg) {
+        String spec = configArg.trim();
+        if (spec.startsWith("--")) {
+            spec = spec.substring(2);
+        }
+        return new QusideProvider(spec);
+    }
+
+    ReseedPolicy getReseedPolicy() {
+        return reseedPolicy;
     }
 
     public static String getInfoString() {
         return INFO;
     }
 
-    public synchronized final Service getService(String type, String algorithm) {
-        if ("SecureRandom.QES".equals(type + "." + algorithm)) {
-            return new QesService(this);
+    private void register(Map<String, Service> services, Service service, List<String> aliases) {
+        putService(service);
+        services.put(service.getAlgorithm().toUpperCase(Locale.ENGLISH), service);
+        for (String alias : aliases) {
+            services.put(alias.toUpperCase(Locale.ENGLISH), service);
+        }
+    }
+
+    /**
+     * Look up a service without locking. The services are built with the provider and the
+     * same instance is returned on every call. Names are matched as the JCA does, ignoring case;
+     * the registered names are all upper case, so only a lower case request costs a conversion.
+     */
+    public final Service getService(String type, String algorithm) {
+        if (!"SecureRandom".equals(type) || algorithm == null) {
+            return null;
         }
 
-        if ("SecureRandom.QRNG".equals(type + "." + algorithm)) {
-            return new QrngService(this);
+        Service service = secureRandomServices.get(algorithm);
+        if (service == null) {
+            service = secureRandomServices.get(algorithm.toUpperCase(Locale.ENGLISH));
         }
-        return null;
+        return service;
+    }
+
+    // QusideQesSpi keeps no state and QusideQrngSpi locks per DRBG shard, SecureRandom need not
+    // serialise calls to either (honoured from Java 9)
+    private static Map<String, String> attributes(String implementedIn, String securityStrength) {
+        Map<String, String> attributes = new HashMap<String, String>();
+        attributes.put("ThreadSafe", "true");
+        attributes.put("ImplementedIn", implementedIn);
+        if (securityStrength != null) {
+            attributes.put("SecurityStrength", securityStrength);
+        }
+        return attributes;
     }
 
     private static class QesService extends Service {
         public QesService(Provider provider) {
-            super(provider, "SecureRandom", "QES", QusideProvider.class.getName() + "$QesService", Collections.emptyList(), Collections.emptyMap());
+            super(provider, "SecureRandom", "QES", QusideProvider.class.getName() + "$QesService", Collections.<String>emptyList(), attributes("Hardware", null));
         }
 
         public Object newInstance(Object constructorParameter) {
@@ -41,13 +117,19 @@ public class QusideProvider extends Provider {
     }
 
     private static class QrngService extends Service {
-        public QrngService(Provider provider) {
-            super(provider, "SecureRandom", "QRNG", QusideProvider.class.getName() + "$QrngService", Collections.emptyList(), Collections.emptyMap());
+        private final DRBGMechanism mechanism;
+        private final ReseedPolicy reseedPolicy;
+
+        public QrngService(QusideProvider provider, DRBGMechanism mechanism) {
+            // the DRBGs run in software, seeded with 256 bits from the QRNG
+            super(provider, "SecureRandom", mechanism.getAlgorithm(), QusideProvider.class.getName() + "$QrngService", mechanism.getAliases(), attributes("Software", "256"));
+            this.mechanism = mechanism;
+            this.reseedPolicy = provider.getReseedPolicy();
         }
 
         public Object newInstance(Object constructorParameter) {
             QusideEntropySource qes = new QusideEntropySource();
-            return new QusideQrngSpi(qes);
+            return new QusideQrngSpi(qes, mechanism, reseedPolicy);
         }
     }
 
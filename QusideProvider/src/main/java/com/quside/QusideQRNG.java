@@ -1,6 +1,8 @@
 package com.quside;
 
-public class QusideQRNG {
+import java.nio.ByteBuffer;
+
+public class QusideQRNG implements QRNGDevice {
     static {
         try {
             System.loadLibrary("QusideQRNG");
@@ -13,6 +15,9 @@ public class QusideQRNG {
     // Native method declarations
     public native int findBoards();
     public native int getRandom(int[] memSlot, int Nuint32, int devInd);
+    // Zero-copy variants: fill len bytes of dest starting at off, dest must be direct for getRandomBuffer
+    public native int getRandomBytes(byte[] dest, int off, int len, int devInd);
+    public native int getRandomBuffer(ByteBuffer dest, int off, int len, int devInd);
     public native int qualityQFactor(int devInd, float[] qFactor);
     public native int getHmin(int devInd, float[] hMin);
     public native int getCalibrationStatus(int devInd, int[] status);
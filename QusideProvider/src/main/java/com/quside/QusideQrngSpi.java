@@ -1,29 +1,138 @@
 package com.quside;
 
+import com.quside.util.Properties;
+
+import java.lang.ref.WeakReference;
 import java.security.SecureRandomSpi;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
 
 
+/**
+ * SecureRandom SPI backed by SP 800-90A DRBG instances seeded from the QRNG, Hash_DRBG unless
+ * another {@link DRBGMechanism} is asked for.
+ * <p>
+ * The SPI is registered as thread safe. Rather than one DRBG behind a lock it keeps a number of
+ * independently seeded DRBG shards, each with its own lock, and a calling thread always uses the
+ * shard picked by its thread id. Shards are instantiated on first use. The number of shards is
+ * taken from com.quside.qrng.shards, rounded up to a power of 2, and defaults to the number of
+ * processors.
+ * </p>
+ * <p>
+ * How often a shard reseeds from the QRNG is set by a {@link ReseedPolicy}. The default policy
+ * is prediction resistance, a reseed before every request.
+ * </p>
+ */
 public class QusideQrngSpi extends SecureRandomSpi {
 
+    static final String SHARDS_PROPERTY = "com.quside.qrng.shards";
+
+    private static final int MAX_SHARDS = 256;
+
+    private static final Object reseederLock = new Object();
+    private static ScheduledExecutorService reseeder;
+
     private final QusideEntropySource entropySource;
-    private final HashSP800DRBG drbg;
+    private final DRBGMechanism mechanism;
+    private final ReseedPolicy policy;
+    private final AtomicReferenceArray<Shard> shards;
+    private final int shardMask;
 
-    QusideQrngSpi(QusideEntropySource qes)
+    QusideQrngSpi(QusideEntropySource qes, ReseedPolicy policy)
+    {
+        this(qes, DRBGMechanism.HASH_SHA512, policy);
+    }
+
+    QusideQrngSpi(QusideEntropySource qes, DRBGMechanism mechanism, ReseedPolicy policy)
+    {
+        this(qes, mechanism, Properties.asInteger(SHARDS_PROPERTY, Runtime.getRuntime().availableProcessors()), policy);
+    }
+
+    QusideQrngSpi(QusideEntropySource qes, int shardCount, ReseedPolicy policy)
+    {
+        this(qes, DRBGMechanism.HASH_SHA512, shardCount, policy);
+    }
+
+    QusideQrngSpi(QusideEntropySource qes, DRBGMechanism mechanism, int shardCount, ReseedPolicy policy)
     {
         this.entropySource = qes;
+        this.mechanism = mechanism;
+        this.policy = policy;
+
+        int size = 1;
+        while (size < shardCount && size < MAX_SHARDS)
+        {
+            size <<= 1;
+        }
+        this.shards = new AtomicReferenceArray<Shard>(size);
+        this.shardMask = size - 1;
+
+        // seed the first shard straight away so a missing QRNG is reported by getInstance()
+        shard(0);
 
-        final byte[] perso = new byte[0];
+        if (policy.getKind() == ReseedPolicy.Kind.MILLIS)
+        {
+            BackgroundReseed.schedule(this, Math.max(1, policy.getLimit() / 2));
+        }
+    }
+
+    int getShardCount()
+    {
+        return shards.length();
+    }
 
-        int size = qes.entropySize();
+    ReseedPolicy getReseedPolicy()
+    {
+        return policy;
+    }
 
-        byte[] nonce = new byte[size];
+    DRBGMechanism getMechanism()
+    {
+        return mechanism;
+    }
+
+    /**
+     * Return the shard for the calling thread.
+     */
+    private Shard shardForThread()
+    {
+        long id = Thread.currentThread().getId();
+
+        return shard((int)((id * 0x9E3779B97F4A7C15L) >>> 32) & shardMask);
+    }
+
+    private Shard shard(int index)
+    {
+        Shard shard = shards.get(index);
+        if (shard == null)
+        {
+            // seed without holding a lock across the device read. Should two threads race, the
+            // loser's DRBG is dropped and both use the one that was published first.
+            Shard seeded = new Shard(newDRBG(index));
+            shard = shards.compareAndSet(index, null, seeded) ? seeded : shards.get(index);
+        }
+        return shard;
+    }
+
+    SP80090DRBG newDRBG(int index)
+    {
+        // each shard has its own nonce, the shard index keeps the instantiations apart should
+        // the QRNG ever repeat itself
+        final byte[] perso = new byte[]{ (byte)(index >>> 24), (byte)(index >>> 16), (byte)(index >>> 8), (byte)index };
+
+        // the full strength of one entropy draw, which is what the services advertise
+        int strength = entropySource.entropySize();
+
+        byte[] nonce = new byte[strength / 8];
 
         this.entropySource.getRandomBytes(nonce);
-        
-        drbg = new HashSP800DRBG(
-               new SHA512Digest(),
-               entropySource.entropySize(),
-               entropySource, perso, nonce);
+
+        return mechanism.create(entropySource, strength, perso, nonce);
     }
 
 
@@ -36,7 +145,16 @@ public class QusideQrngSpi extends SecureRandomSpi {
     @Override
     protected void engineNextBytes(byte[] bytes)
     {
-        drbg.generate(bytes, null, true);
+        Shard shard = shardForThread();
+        shard.lock.lock();
+        try
+        {
+            shard.generate(bytes, policy);
+        }
+        finally
+        {
+            shard.lock.unlock();
+        }
     }
 
     @Override
@@ -53,4 +171,182 @@ public class QusideQrngSpi extends SecureRandomSpi {
     {
         return "QusideQrngSpi["+entropySource.toString()+"]";
     }
+
+    /**
+     * Reseed every instantiated shard whose last reseed is at least minAgeMillis old. Shards
+     * that are busy are left for the next round.
+     */
+    private void reseedStale(long minAgeMillis)
+    {
+        long minAge = TimeUnit.MILLISECONDS.toNanos(minAgeMillis);
+
+        for (int i = 0; i != shards.length(); i++)
+        {
+            Shard shard = shards.get(i);
+            if (shard == null || !shard.lock.tryLock())
+            {
+                continue;
+            }
+            try
+            {
+                if (System.nanoTime() - shard.lastReseed >= minAge)
+                {
+                    shard.reseed();
+                }
+            }
+            catch (RuntimeException e)
+            {
+                // QRNG unavailable, a request finding the shard too old reseeds inline and reports it
+            }
+            finally
+            {
+                shard.lock.unlock();
+            }
+        }
+    }
+
+    // a j.u.c lock rather than a monitor, a virtual thread waiting for a reseed must not pin its carrier
+    private static final class Shard
+    {
+        final ReentrantLock lock = new ReentrantLock();
+        final SP80090DRBG drbg;
+
+        // guarded by lock
+        long calls;
+        long bytes;
+        long lastReseed = System.nanoTime();
+
+        Shard(SP80090DRBG drbg)
+        {
+            this.drbg = drbg;
+        }
+
+        void generate(byte[] output, ReseedPolicy policy)
+        {
+            boolean reseed;
+            switch (policy.getKind())
+            {
+            case ALWAYS:
+                // prediction resistance, fill() reseeds before each generate request it makes
+                drbg.fill(output, 0, output.length, null, true);
+                reset();
+                return;
+            case BYTES:
+                generateBytes(output, policy.getLimit());
+                return;
+            case CALLS:
+                reseed = calls >= policy.getLimit();
+                break;
+            case MILLIS:
+                reseed = System.nanoTime() - lastReseed >= TimeUnit.MILLISECONDS.toNanos(policy.getLimit());
+                break;
+            default:
+                reseed = true;
+            }
+
+            // one reseed for the whole call, fill() splits requests longer than the DRBG accepts
+            // and handles the reseed interval of the DRBG itself
+            if (reseed)
+            {
+                drbg.reseed(null);
+            }
+            drbg.fill(output, 0, output.length, null, false);
+
+            if (reseed)
+            {
+                reset();
+            }
+            calls++;
+            bytes += output.length;
+        }
+
+        // a request crossing the byte limit is split there, with a reseed between the pieces
+        private void generateBytes(byte[] output, long limit)
+        {
+            for (int off = 0; off < output.length; )
+            {
+                if (bytes >= limit)
+                {
+                    reseed();
+                }
+
+                int len = (int)Math.min(output.length - off, limit - bytes);
+                drbg.fill(output, off, len, null, false);
+                bytes += len;
+                off += len;
+            }
+            calls++;
+        }
+
+        void reseed()
+        {
+            drbg.reseed(null);
+            reset();
+        }
+
+        private void reset()
+        {
+            calls = 0;
+            bytes = 0;
+            lastReseed = System.nanoTime();
+        }
+    }
+
+    /**
+     * Periodic reseed for the "millis" policy. Only a weak reference to the SPI is held, the
+     * task cancels itself once the SPI has been collected.
+     */
+    private static final class BackgroundReseed
+        implements Runnable
+    {
+        private final WeakReference<QusideQrngSpi> spi;
+        private final long periodMillis;
+        private volatile ScheduledFuture<?> future;
+
+        private BackgroundReseed(QusideQrngSpi spi, long periodMillis)
+        {
+            this.spi = new WeakReference<QusideQrngSpi>(spi);
+            this.periodMillis = periodMillis;
+        }
+
+        static void schedule(QusideQrngSpi spi, long periodMillis)
+        {
+            ScheduledExecutorService executor;
+            synchronized (reseederLock)
+            {
+                if (reseeder == null)
+                {
+                    reseeder = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+                    {
+                        public Thread newThread(Runnable r)
+                        {
+                            Thread t = new Thread(r, "Quside-Reseed");
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    });
+                }
+                executor = reseeder;
+            }
+
+            BackgroundReseed task = new BackgroundReseed(spi, periodMillis);
+            task.future = executor.scheduleWithFixedDelay(task, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        }
+
+        public void run()
+        {
+            QusideQrngSpi s = spi.get();
+            if (s == null)
+            {
+                ScheduledFuture<?> f = future;
+                if (f != null)
+                {
+                    f.cancel(false);
+                }
+                return;
+            }
+
+            s.reseedStale(periodMillis);
+        }
+    }
 }
@@ -0,0 +1,140 @@
+package com.quside;
+
+import com.quside.util.Properties;
+
+/**
+ * When the Hash_DRBG shards behind the QRNG SecureRandom draw fresh entropy from the QRNG.
+ * <p>
+ * A policy is written as a short string:
+ * </p>
+ * <ul>
+ * <li>"always" - prediction resistance, every request reseeds first (the default).</li>
+ * <li>"calls:N" - at most N requests are served from one seed.</li>
+ * <li>"bytes:N" - reseed once N bytes have been generated since the last reseed.</li>
+ * <li>"millis:T" - shards older than T/2 milliseconds are reseeded by a background thread. A
+ * request finding its shard older than T reseeds inline, so a stalled background thread never
+ * stretches the interval.</li>
+ * </ul>
+ */
+final class ReseedPolicy
+{
+    static final String POLICY_PROPERTY = "com.quside.qrng.reseed";
+
+    /**
+     * The event driving the reseed.
+     */
+    enum Kind
+    {
+        ALWAYS,
+        CALLS,
+        BYTES,
+        MILLIS
+    }
+
+    static final ReseedPolicy ALWAYS = new ReseedPolicy(Kind.ALWAYS, 0);
+
+    private final Kind kind;
+    private final long limit;
+
+    private ReseedPolicy(Kind kind, long limit)
+    {
+        this.kind = kind;
+        this.limit = limit;
+    }
+
+    /**
+     * Parse a policy string.
+     *
+     * @param spec the policy, e.g. "always" or "calls:1000".
+     * @return the matching policy.
+     * @throws IllegalArgumentException if spec cannot be parsed.
+     */
+    static ReseedPolicy parse(String spec)
+    {
+        String s = spec.trim();
+        if ("always".equalsIgnoreCase(s))
+        {
+            return ALWAYS;
+        }
+
+        int colon = s.indexOf(':');
+        if (colon < 0)
+        {
+            throw new IllegalArgumentException("Unknown reseed policy: " + spec);
+        }
+
+        Kind kind;
+        try
+        {
+            kind = Kind.valueOf(s.substring(0, colon).trim().toUpperCase());
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new IllegalArgumentException("Unknown reseed policy: " + spec);
+        }
+
+        long limit;
+        try
+        {
+            limit = Long.parseLong(s.substring(colon + 1).trim());
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IllegalArgumentException("Reseed policy limit must be a number: " + spec);
+        }
+        if (kind == Kind.ALWAYS || limit < 1)
+        {
+            throw new IllegalArgumentException("Reseed policy limit must be positive: " + spec);
+        }
+
+        return new ReseedPolicy(kind, limit);
+    }
+
+    /**
+     * Return the policy set by the com.quside.qrng.reseed property.
+     *
+     * @return the configured policy, ALWAYS if the property is not set.
+     */
+    static ReseedPolicy fromProperties()
+    {
+        String spec = Properties.getPropertyValue(POLICY_PROPERTY);
+
+        return (spec == null) ? ALWAYS : parse(spec);
+    }
+
+    Kind getKind()
+    {
+        return kind;
+    }
+
+    /**
+     * Return the number of calls, bytes or milliseconds between reseeds.
+     *
+     * @return the limit, 0 for ALWAYS.
+     */
+    long getLimit()
+    {
+        return limit;
+    }
+
+    public boolean equals(Object o)
+    {
+        if (!(o instanceof ReseedPolicy))
+        {
+            return false;
+        }
+        ReseedPolicy other = (ReseedPolicy)o;
+
+        return kind == other.kind && limit == other.limit;
+    }
+
+    public int hashCode()
+    {
+        return kind.hashCode() * 31 + (int)(limit ^ (limit >>> 32));
+    }
+
+    public String toString()
+    {
+        return (kind == Kind.ALWAYS) ? "always" : kind.name().toLowerCase() + ":" + limit;
+    }
+}
@@ -0,0 +1,88 @@
+package com.quside;
+
+import com.quside.util.Pack;
+
+/**
+ * FIPS 180-4 implementation of SHA-384.
+ */
+class SHA384Digest extends LongDigest implements Digest, Memoable
+{
+    private static final int DIGEST_LENGTH = 48;
+
+    /**
+     * Standard constructor
+     */
+    public SHA384Digest()
+    {
+    }
+
+    /**
+     * Copy constructor.  This will copy the state of the provided
+     * message digest.
+     */
+    public SHA384Digest(SHA384Digest t)
+    {
+        super(t);
+    }
+
+    public String getAlgorithmName()
+    {
+        return "SHA-384";
+    }
+
+    public int getDigestSize()
+    {
+        return DIGEST_LENGTH;
+    }
+
+    public int doFinal(
+            byte[] out,
+            int outOff)
+    {
+        finish();
+
+        Pack.longToBigEndian(H1, out, outOff);
+        Pack.longToBigEndian(H2, out, outOff + 8);
+        Pack.longToBigEndian(H3, out, outOff + 16);
+        Pack.longToBigEndian(H4, out, outOff + 24);
+        Pack.longToBigEndian(H5, out, outOff + 32);
+        Pack.longToBigEndian(H6, out, outOff + 40);
+
+        reset();
+
+        return DIGEST_LENGTH;
+    }
+
+    /**
+     * reset the chaining variables
+     */
+    public void reset()
+    {
+        super.reset();
+
+        /* SHA-384 initial hash value
+         * The first 64 bits of the fractional parts of the square roots
+         * of the 9th through 16th prime numbers
+         */
+        H1 = 0xcbbb9d5dc1059ed8L;
+        H2 = 0x629a292a367cd507L;
+        H3 = 0x9159015a3070dd17L;
+        H4 = 0x152fecd8f70e5939L;
+        H5 = 0x67332667ffc00b31L;
+        H6 = 0x8eb44a8768581511L;
+        H7 = 0xdb0c2e0d64f98fa7L;
+        H8 = 0x47b5481dbefa4fa4L;
+    }
+
+    public Memoable copy()
+    {
+        return new SHA384Digest(this);
+    }
+
+    public void reset(Memoable other)
+    {
+        SHA384Digest d = (SHA384Digest)other;
+
+        copyIn(d);
+    }
+}
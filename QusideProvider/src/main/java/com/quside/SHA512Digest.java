@@ -2,7 +2,7 @@ package com.quside;
 
 import com.quside.util.Pack;
 
-class SHA512Digest extends LongDigest implements Digest
+class SHA512Digest extends LongDigest implements Digest, Memoable
 {
     private static final int DIGEST_LENGTH = 64;
 
@@ -73,15 +73,15 @@ class SHA512Digest extends LongDigest implements Digest
         H8 = 0x5be0cd19137e2179L;
     }
 
-//    public Memoable copy()
-//    {
-//        return new SHA512Digest(this);
-//    }
+    public Memoable copy()
+    {
+        return new SHA512Digest(this);
+    }
 
-//    public void reset(Memoable other)
-//    {
-//        SHA512Digest d = (SHA512Digest)other;
-//
-//        copyIn(d);
-//    }
+    public void reset(Memoable other)
+    {
+        SHA512Digest d = (SHA512Digest)other;
+
+        copyIn(d);
+    }
 }
@@ -1,5 +1,22 @@
 package com.quside;
 
+import com.quside.util.Arrays;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * SP800-90A DRBG.
+ * <p>
+ * A single generate call is limited to {@link #getMaxBitsPerRequest()} bits. The fill and stream
+ * methods take requests of any length and split them into generate calls of at most that size,
+ * each passed the same additional input and prediction resistance setting, reseeding whenever
+ * the DRBG reports its reseed interval exhausted.
+ * </p>
+ */
 interface SP80090DRBG extends DRBG
 {
     /**
@@ -27,11 +44,186 @@ interface SP80090DRBG extends DRBG
      */
     int generate(byte[] output, byte[] additionalInput, boolean predictionResistant);
 
+    /**
+     * Populate part of a passed in array with random data.
+     *
+     * @param output output array for generated bits.
+     * @param outOff offset into output of the first generated byte.
+     * @param outLen number of bytes to generate, at most getMaxBitsPerRequest() / 8.
+     * @param additionalInput additional input to be added to the DRBG in this step.
+     * @param predictionResistant true if a reseed should be forced, false otherwise.
+     *
+     * @return number of bits generated, -1 if a reseed required.
+     */
+    int generate(byte[] output, int outOff, int outLen, byte[] additionalInput, boolean predictionResistant);
+
+    /**
+     * Return the largest request a single generate call accepts.
+     *
+     * @return the maximum number of bits per request.
+     */
+    int getMaxBitsPerRequest();
+
+    /**
+     * Populate part of a passed in array with random data, in as many requests as needed.
+     *
+     * @param output output array for generated bits.
+     * @param outOff offset into output of the first generated byte.
+     * @param outLen number of bytes to generate.
+     * @param additionalInput additional input to be added to the DRBG in each request.
+     * @param predictionResistant true if each request should reseed first, false otherwise.
+     */
+    default void fill(byte[] output, int outOff, int outLen, byte[] additionalInput, boolean predictionResistant)
+    {
+        if (outOff < 0 || outLen < 0 || outOff > output.length - outLen)
+        {
+            throw new ArrayIndexOutOfBoundsException("outOff/outLen outside of output");
+        }
+
+        int maxRequest = getMaxBitsPerRequest() / 8;
+        int end = outOff + outLen;
+
+        while (outOff < end)
+        {
+            int len = Math.min(maxRequest, end - outOff);
+
+            if (generate(output, outOff, len, additionalInput, predictionResistant) < 0)
+            {
+                // reseed interval exhausted, a prediction resistant request has already reseeded
+                reseed(null);
+                generate(output, outOff, len, additionalInput, false);
+            }
+
+            outOff += len;
+        }
+    }
+
+    /**
+     * Fill the remaining bytes of a buffer with random data, in as many requests as needed. The
+     * buffer position is advanced to its limit.
+     * <p>
+     * A heap buffer is written in place, a direct buffer through a staging array of at most one
+     * request.
+     * </p>
+     *
+     * @param output buffer to fill.
+     * @param additionalInput additional input to be added to the DRBG in each request.
+     * @param predictionResistant true if each request should reseed first, false otherwise.
+     */
+    default void generate(ByteBuffer output, byte[] additionalInput, boolean predictionResistant)
+    {
+        if (output.isReadOnly())
+        {
+            throw new ReadOnlyBufferException();
+        }
+
+        int remaining = output.remaining();
+
+        if (output.hasArray())
+        {
+            fill(output.array(), output.arrayOffset() + output.position(), remaining, additionalInput, predictionResistant);
+            output.position(output.limit());
+            return;
+        }
+
+        byte[] staging = new byte[Math.min(remaining, getMaxBitsPerRequest() / 8)];
+        try
+        {
+            while (output.hasRemaining())
+            {
+                int len = Math.min(staging.length, output.remaining());
+
+                fill(staging, 0, len, additionalInput, predictionResistant);
+                output.put(staging, 0, len);
+            }
+        }
+        finally
+        {
+            Arrays.fill(staging, (byte)0);
+        }
+    }
+
+    /**
+     * Write random data to a stream, in as many requests as needed, through a staging array of at
+     * most one request.
+     *
+     * @param output stream to write to.
+     * @param length number of bytes to write.
+     * @param additionalInput additional input to be added to the DRBG in each request.
+     * @param predictionResistant true if each request should reseed first, false otherwise.
+     * @throws IOException if the stream cannot be written.
+     */
+    default void generate(OutputStream output, long length, byte[] additionalInput, boolean predictionResistant)
+        throws IOException
+    {
+        if (length < 0)
+        {
+            throw new IllegalArgumentException("length cannot be negative");
+        }
+
+        byte[] staging = new byte[(int)Math.min(length, getMaxBitsPerRequest() / 8)];
+        try
+        {
+            while (length > 0)
+            {
+                int len = (int)Math.min(staging.length, length);
+
+                fill(staging, 0, len, additionalInput, predictionResistant);
+                output.write(staging, 0, len);
+                length -= len;
+            }
+        }
+        finally
+        {
+            Arrays.fill(staging, (byte)0);
+        }
+    }
+
+    /**
+     * Write random data to a channel, in as many requests as needed, through a staging buffer of
+     * at most one request.
+     *
+     * @param output channel to write to, a non-blocking channel is written in a busy loop.
+     * @param length number of bytes to write.
+     * @param additionalInput additional input to be added to the DRBG in each request.
+     * @param predictionResistant true if each request should reseed first, false otherwise.
+     * @throws IOException if the channel cannot be written.
+     */
+    default void generate(WritableByteChannel output, long length, byte[] additionalInput, boolean predictionResistant)
+        throws IOException
+    {
+        if (length < 0)
+        {
+            throw new IllegalArgumentException("length cannot be negative");
+        }
+
+        byte[] staging = new byte[(int)Math.min(length, getMaxBitsPerRequest() / 8)];
+        ByteBuffer buffer = ByteBuffer.wrap(staging);
+        try
+        {
+            while (length > 0)
+            {
+                int len = (int)Math.min(staging.length, length);
+
+                fill(staging, 0, len, additionalInput, predictionResistant);
+                buffer.clear().limit(len);
+                while (buffer.hasRemaining())
+                {
+                    output.write(buffer);
+                }
+                length -= len;
+            }
+        }
+        finally
+        {
+            Arrays.fill(staging, (byte)0);
+        }
+    }
+
     /**
      * Reseed the DRBG.
      *
      * @param additionalInput additional input to be added to the DRBG in this step.
      */
     void reseed(byte[] additionalInput);
-
-}
\ No newline at end of file
+}
@@ -0,0 +1,447 @@
+package com.quside;
+
+import com.quside.util.Properties;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Pure Java stand-in for the QRNG boards, selected by setting com.quside.device to "simulated".
+ * <p>
+ * Each simulated board serves one read at a time. A read occupies the board for a latency drawn
+ * from the configured distribution plus the time needed to transfer the data at the configured
+ * rate, so queueing and tail latency behave much like they do on real hardware. Calibration goes
+ * through the same states as the native library and reads can be made to fail at random.
+ * </p>
+ * <p>
+ * The output comes from {@link ThreadLocalRandom} and is NOT suitable for anything but testing
+ * and benchmarking.
+ * </p>
+ * <table summary="Simulation properties">
+ * <tr><th>Property</th><th>Default</th><th>Meaning</th></tr>
+ * <tr><td>com.quside.simulated.boards</td><td>1</td><td>number of boards</td></tr>
+ * <tr><td>com.quside.simulated.latencyMicros</td><td>0</td><td>fixed part of the per-read latency</td></tr>
+ * <tr><td>com.quside.simulated.jitterMicros</td><td>0</td><td>scale of the random part of the latency</td></tr>
+ * <tr><td>com.quside.simulated.latencyDistribution</td><td>uniform</td><td>fixed, uniform or exponential</td></tr>
+ * <tr><td>com.quside.simulated.bytesPerSecond</td><td>0</td><td>per board transfer rate, 0 for unlimited</td></tr>
+ * <tr><td>com.quside.simulated.errorRate</td><td>0</td><td>probability that a read fails</td></tr>
+ * <tr><td>com.quside.simulated.initialStatus</td><td>CALIB_SUCCED</td><td>calibration status at start up</td></tr>
+ * <tr><td>com.quside.simulated.calibrationMillis</td><td>0</td><td>time spent in CALIBRATING</td></tr>
+ * <tr><td>com.quside.simulated.calibrationFailureRate</td><td>0</td><td>probability that calibration ends in CALIB_FAIL</td></tr>
+ * <tr><td>com.quside.simulated.qFactor</td><td>0.9</td><td>value reported by qualityQFactor</td></tr>
+ * <tr><td>com.quside.simulated.hMin</td><td>0.98</td><td>value reported by getHmin</td></tr>
+ * </table>
+ */
+class SimulatedQRNG
+    implements QRNGDevice
+{
+    static final String BOARDS_PROPERTY = "com.quside.simulated.boards";
+    static final String LATENCY_PROPERTY = "com.quside.simulated.latencyMicros";
+    static final String JITTER_PROPERTY = "com.quside.simulated.jitterMicros";
+    static final String DISTRIBUTION_PROPERTY = "com.quside.simulated.latencyDistribution";
+    static final String BYTES_PER_SECOND_PROPERTY = "com.quside.simulated.bytesPerSecond";
+    static final String ERROR_RATE_PROPERTY = "com.quside.simulated.errorRate";
+    static final String INITIAL_STATUS_PROPERTY = "com.quside.simulated.initialStatus";
+    static final String CALIBRATION_MILLIS_PROPERTY = "com.quside.simulated.calibrationMillis";
+    static final String CALIBRATION_FAILURE_RATE_PROPERTY = "com.quside.simulated.calibrationFailureRate";
+    static final String QFACTOR_PROPERTY = "com.quside.simulated.qFactor";
+    static final String HMIN_PROPERTY = "com.quside.simulated.hMin";
+
+    /**
+     * The byte a board delivers once {@link #setStuck(int, boolean)} has been called on it.
+     */
+    static final int STUCK_BYTE = 0xA5;
+
+    /**
+     * Shape of the random part of the per-read latency.
+     */
+    enum LatencyDistribution
+    {
+        FIXED,
+        UNIFORM,
+        EXPONENTIAL
+    }
+
+    private static final ThreadLocal<Object> monitors = new ThreadLocal<Object>()
+    {
+        protected Object initialValue()
+        {
+            return new Object();
+        }
+    };
+
+    private final Board[] boards;
+    private final long latencyNanos;
+    private final long jitterNanos;
+    private final LatencyDistribution distribution;
+    private final long bytesPerSecond;
+    private final double errorRate;
+    private final long calibrationNanos;
+    private final double calibrationFailureRate;
+    private final float qFactor;
+    private final float hMin;
+
+    /**
+     * Base constructor.
+     *
+     * @param numBoards              number of simulated boards.
+     * @param latencyMicros          fixed part of the per-read latency.
+     * @param jitterMicros           scale of the random part of the per-read latency.
+     * @param distribution           distribution of the random part of the latency.
+     * @param bytesPerSecond         per board transfer rate, 0 for unlimited.
+     * @param errorRate              probability that a read fails.
+     * @param initialStatus          calibration status of every board at start up.
+     * @param calibrationMillis      time a board spends calibrating.
+     * @param calibrationFailureRate probability that a calibration fails.
+     */
+    SimulatedQRNG(int numBoards, long latencyMicros, long jitterMicros, LatencyDistribution distribution,
+                  long bytesPerSecond, double errorRate, CalibrationStatus initialStatus,
+                  long calibrationMillis, double calibrationFailureRate)
+    {
+        this(numBoards, latencyMicros, jitterMicros, distribution, bytesPerSecond, errorRate, initialStatus,
+            calibrationMillis, calibrationFailureRate, 0.9f, 0.98f);
+    }
+
+    private SimulatedQRNG(int numBoards, long latencyMicros, long jitterMicros, LatencyDistribution distribution,
+                          long bytesPerSecond, double errorRate, CalibrationStatus initialStatus,
+                          long calibrationMillis, double calibrationFailureRate, float qFactor, float hMin)
+    {
+        if (numBoards < 0 || latencyMicros < 0 || jitterMicros < 0 || bytesPerSecond < 0 || calibrationMillis < 0)
+        {
+            throw new IllegalArgumentException("Simulated device parameters must not be negative");
+        }
+        if (errorRate < 0 || errorRate > 1 || calibrationFailureRate < 0 || calibrationFailureRate > 1)
+        {
+            throw new IllegalArgumentException("Simulated device rates must be between 0 and 1");
+        }
+
+        this.boards = new Board[numBoards];
+        for (int i = 0; i != numBoards; i++)
+        {
+            boards[i] = new Board(initialStatus);
+        }
+        this.latencyNanos = latencyMicros * 1000;
+        this.jitterNanos = jitterMicros * 1000;
+        this.distribution = distribution;
+        this.bytesPerSecond = bytesPerSecond;
+        this.errorRate = errorRate;
+        this.calibrationNanos = calibrationMillis * 1000000L;
+        this.calibrationFailureRate = calibrationFailureRate;
+        this.qFactor = qFactor;
+        this.hMin = hMin;
+    }
+
+    /**
+     * Create a simulated device configured from the com.quside.simulated.* properties.
+     *
+     * @return a new simulated device.
+     */
+    static SimulatedQRNG fromProperties()
+    {
+        return new SimulatedQRNG(
+            Properties.asInteger(BOARDS_PROPERTY, 1),
+            Properties.asInteger(LATENCY_PROPERTY, 0),
+            Properties.asInteger(JITTER_PROPERTY, 0),
+            LatencyDistribution.valueOf(Properties.getPropertyValue(DISTRIBUTION_PROPERTY, "uniform").trim().toUpperCase()),
+            Properties.asInteger(BYTES_PER_SECOND_PROPERTY, 0),
+            Properties.asDouble(ERROR_RATE_PROPERTY, 0),
+            CalibrationStatus.valueOf(Properties.getPropertyValue(INITIAL_STATUS_PROPERTY, "CALIB_SUCCED").trim().toUpperCase()),
+            Properties.asInteger(CALIBRATION_MILLIS_PROPERTY, 0),
+            Properties.asDouble(CALIBRATION_FAILURE_RATE_PROPERTY, 0),
+            (float)Properties.asDouble(QFACTOR_PROPERTY, 0.9),
+            (float)Properties.asDouble(HMIN_PROPERTY, 0.98));
+    }
+
+    public int findBoards()
+    {
+        return boards.length;
+    }
+
+    public int getRandom(int[] memSlot, int Nuint32, int devInd)
+    {
+        if (Nuint32 < 0 || Nuint32 > memSlot.length)
+        {
+            throw new ArrayIndexOutOfBoundsException("word count outside of array");
+        }
+
+        int ret = read(devInd, Nuint32 * 4L);
+        if (ret == 0 && boards[devInd].isStuck())
+        {
+            for (int i = 0; i != Nuint32; i++)
+            {
+                memSlot[i] = STUCK_BYTE * 0x01010101;
+            }
+        }
+        else if (ret == 0)
+        {
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            for (int i = 0; i != Nuint32; i++)
+            {
+                memSlot[i] = rnd.nextInt();
+            }
+        }
+        return ret;
+    }
+
+    public int getRandomBytes(byte[] dest, int off, int len, int devInd)
+    {
+        if (off < 0 || len < 0 || off > dest.length - len)
+        {
+            throw new ArrayIndexOutOfBoundsException("offset/length outside of array");
+        }
+
+        int ret = read(devInd, len);
+        if (ret == 0 && boards[devInd].isStuck())
+        {
+            for (int i = 0; i != len; i++)
+            {
+                dest[off + i] = (byte)STUCK_BYTE;
+            }
+        }
+        else if (ret == 0)
+        {
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            for (int i = 0; i < len; )
+            {
+                int r = rnd.nextInt();
+                for (int n = Math.min(4, len - i); n > 0; n--, r >>>= 8)
+                {
+                    dest[off + i++] = (byte)r;
+                }
+            }
+        }
+        return ret;
+    }
+
+    public int getRandomBuffer(ByteBuffer dest, int off, int len, int devInd)
+    {
+        if (!dest.isDirect())
+        {
+            throw new IllegalArgumentException("buffer is not direct");
+        }
+        if (off < 0 || len < 0 || off > dest.capacity() - len)
+        {
+            throw new IndexOutOfBoundsException("offset/length outside of buffer");
+        }
+
+        int ret = read(devInd, len);
+        if (ret == 0 && boards[devInd].isStuck())
+        {
+            for (int i = 0; i != len; i++)
+            {
+                dest.put(off + i, (byte)STUCK_BYTE);
+            }
+        }
+        else if (ret == 0)
+        {
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            int i = 0;
+            for (; i + 8 <= len; i += 8)
+            {
+                dest.putLong(off + i, rnd.nextLong());
+            }
+            for (; i < len; i++)
+            {
+                dest.put(off + i, (byte)rnd.nextInt());
+            }
+        }
+        return ret;
+    }
+
+    public int qualityQFactor(int devInd, float[] qFactor)
+    {
+        if (!isValid(devInd))
+        {
+            return -1;
+        }
+        qFactor[0] = this.qFactor;
+        return 0;
+    }
+
+    public int getHmin(int devInd, float[] hMin)
+    {
+        if (!isValid(devInd))
+        {
+            return -1;
+        }
+        hMin[0] = this.hMin;
+        return 0;
+    }
+
+    public int getCalibrationStatus(int devInd, int[] status)
+    {
+        if (!isValid(devInd))
+        {
+            return -1;
+        }
+        status[0] = boards[devInd].getStatus().ordinal();
+        return 0;
+    }
+
+    public int setCalibration(int devInd)
+    {
+        if (!isValid(devInd))
+        {
+            return -1;
+        }
+
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        boards[devInd].calibrate(System.nanoTime() + calibrationNanos,
+            (calibrationFailureRate > 0 && rnd.nextDouble() < calibrationFailureRate)
+                ? CalibrationStatus.CALIB_FAIL : CalibrationStatus.CALIB_SUCCED);
+        return 0;
+    }
+
+    /**
+     * Force the calibration status of a board, as if it had drifted or lost its I2C link.
+     *
+     * @param devInd the device index.
+     * @param status the new status.
+     */
+    void setStatus(int devInd, CalibrationStatus status)
+    {
+        boards[devInd].setStatus(status);
+    }
+
+    /**
+     * Make a board deliver the same byte over and over, as a noise source that has stopped
+     * working would, while reads keep succeeding.
+     *
+     * @param devInd the device index.
+     * @param stuck  true to deliver STUCK_BYTE, false for random data again.
+     */
+    void setStuck(int devInd, boolean stuck)
+    {
+        boards[devInd].setStuck(stuck);
+    }
+
+    private boolean isValid(int devInd)
+    {
+        return devInd >= 0 && devInd < boards.length;
+    }
+
+    /**
+     * Occupy board devInd for the time needed to deliver len bytes.
+     *
+     * @return 0 if the read succeeded, -1 if it failed.
+     */
+    private int read(int devInd, long len)
+    {
+        if (!isValid(devInd))
+        {
+            return -1;
+        }
+
+        Board board = boards[devInd];
+        if (board.getStatus() != CalibrationStatus.CALIB_SUCCED)
+        {
+            return -1;
+        }
+
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        long busy = latencyNanos + sampleJitter(rnd);
+        if (bytesPerSecond > 0)
+        {
+            busy += len * 1000000000L / bytesPerSecond;
+        }
+        if (busy > 0)
+        {
+            sleepUntil(board.reserve(busy));
+        }
+
+        return (errorRate > 0 && rnd.nextDouble() < errorRate) ? -1 : 0;
+    }
+
+    private long sampleJitter(ThreadLocalRandom rnd)
+    {
+        if (jitterNanos == 0)
+        {
+            return 0;
+        }
+
+        switch (distribution)
+        {
+        case UNIFORM:
+            return rnd.nextLong(jitterNanos + 1);
+        case EXPONENTIAL:
+            return (long)(-jitterNanos * Math.log(1.0 - rnd.nextDouble()));
+        default:
+            return 0;
+        }
+    }
+
+    // The wait is made holding a monitor so that, like a thread blocked in JNI, a virtual thread
+    // keeps its carrier for the whole read (Java 21 to 23).
+    private static void sleepUntil(long deadline)
+    {
+        synchronized (monitors.get())
+        {
+            for (long remaining = deadline - System.nanoTime(); remaining > 0; remaining = deadline - System.nanoTime())
+            {
+                LockSupport.parkNanos(remaining);
+            }
+        }
+    }
+
+    private static class Board
+    {
+        private CalibrationStatus status;
+        private CalibrationStatus outcome;
+        private long calibratedAt;
+        private long busyUntil = System.nanoTime();
+        private volatile boolean stuck;
+
+        Board(CalibrationStatus status)
+        {
+            this.status = status;
+        }
+
+        synchronized CalibrationStatus getStatus()
+        {
+            if (status == CalibrationStatus.CALIBRATING && System.nanoTime() - calibratedAt >= 0)
+            {
+                status = outcome;
+            }
+            return status;
+        }
+
+        synchronized void setStatus(CalibrationStatus status)
+        {
+            this.status = status;
+        }
+
+        boolean isStuck()
+        {
+            return stuck;
+        }
+
+        void setStuck(boolean stuck)
+        {
+            this.stuck = stuck;
+        }
+
+        synchronized void calibrate(long calibratedAt, CalibrationStatus outcome)
+        {
+            this.status = CalibrationStatus.CALIBRATING;
+            this.outcome = outcome;
+            this.calibratedAt = calibratedAt;
+        }
+
+        /**
+         * Queue a read behind any reads already in progress.
+         *
+         * @return the time at which the read completes.
+         */
+        synchronized long reserve(long busy)
+        {
+            long now = System.nanoTime();
+            if (busyUntil - now < 0)
+            {
+                busyUntil = now;
+            }
+            busyUntil += busy;
+            return busyUntil;
+        }
+    }
+}
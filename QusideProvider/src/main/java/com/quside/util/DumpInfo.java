@@ -73,11 +73,28 @@ public class DumpInfo
             System.out.println("Jitter Not Supported");
         }
 
+        // -DM System.out.println
+        System.out.println("\nDigest Backend: " + EntropyProviderInfo.digestBackend());
+
+        // -DM System.out.println
+        System.out.println("\nBoards:");
+        for (BoardStatistics stats : EntropyProviderInfo.boardStatistics())
+        {
+            // -DM System.out.println
+            System.out.println("    " + stats);
+        }
+
         // -DM System.out.println
         // -DM System.out.println
         System.out.println("\nModule Checksum:");
         // -DM Hex.toHexString
         System.out.println(Hex.toHexString(EntropyProviderStatus.getModuleHMAC()));
+        long checksumNanos = EntropyProviderStatus.getModuleChecksumNanos();
+        if (checksumNanos >= 0)
+        {
+            // -DM System.out.println
+            System.out.println("Calculated in " + String.format("%.2f", checksumNanos / 1e6) + " ms");
+        }
 
     }
 
@@ -0,0 +1,133 @@
+package com.quside.util;
+
+import java.security.AccessControlException;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+
+/**
+ * Utility method for accessing system properties.
+ */
+public class Properties
+{
+    private Properties()
+    {
+    }
+
+    /**
+     * Return whether a particular override has been set to true.
+     *
+     * @param propertyName the property name for the override.
+     * @return true if the property is set to "true", false otherwise.
+     */
+    public static boolean isOverrideSet(String propertyName)
+    {
+        return isOverrideSet(propertyName, false);
+    }
+
+    /**
+     * Return whether a particular override has been set to true.
+     *
+     * @param propertyName the property name for the override.
+     * @param defIsTrue    true if the override should be true if the property is not set.
+     * @return true if the property is set to "true", false otherwise.
+     */
+    public static boolean isOverrideSet(String propertyName, boolean defIsTrue)
+    {
+        String value = getPropertyValue(propertyName);
+        if (value == null)
+        {
+            return defIsTrue;
+        }
+
+        return "true".equalsIgnoreCase(value.trim());
+    }
+
+    /**
+     * Return propertyName as an integer, defaultValue used if not defined.
+     *
+     * @param propertyName name of property.
+     * @param defaultValue integer to return if property not defined.
+     * @return value of property, or default if not found, as an int.
+     */
+    public static int asInteger(String propertyName, int defaultValue)
+    {
+        String p = getPropertyValue(propertyName);
+
+        if (p != null)
+        {
+            return Integer.parseInt(p.trim());
+        }
+
+        return defaultValue;
+    }
+
+    /**
+     * Return propertyName as a double, defaultValue used if not defined.
+     *
+     * @param propertyName name of property.
+     * @param defaultValue double to return if property not defined.
+     * @return value of property, or default if not found, as a double.
+     */
+    public static double asDouble(String propertyName, double defaultValue)
+    {
+        String p = getPropertyValue(propertyName);
+
+        if (p != null)
+        {
+            return Double.parseDouble(p.trim());
+        }
+
+        return defaultValue;
+    }
+
+    /**
+     * Return the String value of the property propertyName. Property valuation
+     * starts with java.security, then system properties.
+     *
+     * @param propertyName name of property.
+     * @return value of property as a String, null if not defined.
+     */
+    public static String getPropertyValue(final String propertyName)
+    {
+        try
+        {
+            return AccessController.doPrivileged(new PrivilegedAction<String>()
+            {
+                public String run()
+                {
+                    String v = java.security.Security.getProperty(propertyName);
+                    if (v != null)
+                    {
+                        return v;
+                    }
+
+                    return System.getProperty(propertyName);
+                }
+            });
+        }
+        catch (AccessControlException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Return the String value of the property propertyName, or defValue if the property
+     * is not defined.
+     *
+     * @param propertyName name of property.
+     * @param defValue     value to return if the property is not defined.
+     * @return value of property as a String, defValue if not defined.
+     */
+    public static String getPropertyValue(String propertyName, String defValue)
+    {
+        String rv = getPropertyValue(propertyName);
+
+        if (rv == null)
+        {
+            return defValue;
+        }
+
+        return rv;
+    }
+}
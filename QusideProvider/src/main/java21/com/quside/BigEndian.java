@@ -0,0 +1,33 @@
+package com.quside;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Big endian word reads for the digest block paths, Java 21 version.
+ * <p>
+ * Each word is read through a byte array view VarHandle, which HotSpot compiles to a single
+ * unaligned load and a byte swap.
+ * </p>
+ */
+final class BigEndian
+{
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private BigEndian()
+    {
+    }
+
+    /**
+     * Read 8 bytes as a big endian long.
+     *
+     * @param bs  the source array.
+     * @param off offset of the most significant byte.
+     * @return the word.
+     */
+    static long getLong(byte[] bs, int off)
+    {
+        return (long)LONGS.get(bs, off);
+    }
+}
@@ -0,0 +1,116 @@
+package com.quside;
+
+import com.quside.util.Properties;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Hand-off point for blocking device calls, Java 21 version.
+ * <p>
+ * A virtual thread blocked in JNI keeps its carrier thread, so a few thousand virtual threads
+ * reading the QRNG can starve every other virtual thread in the JVM. Calls made from virtual
+ * threads are therefore run on a small pool of Quside-Native platform threads and the caller
+ * parks on a future, which releases its carrier. Platform threads call the device directly.
+ * Setting com.quside.offload to false restores the Java 8 behaviour.
+ * </p>
+ */
+final class NativeOffload
+{
+    static final String ENABLED_PROPERTY = "com.quside.offload";
+    static final String THREADS_PROPERTY = "com.quside.offload.threads";
+
+    private static final int DEFAULT_THREADS = 4;
+
+    private static final boolean enabled = Properties.isOverrideSet(ENABLED_PROPERTY, true);
+
+    private NativeOffload()
+    {
+    }
+
+    /**
+     * Return whether device calls made by the current thread should go through {@link #call(IntSupplier)}.
+     *
+     * @return true on a virtual thread unless offloading has been disabled.
+     */
+    static boolean isRequired()
+    {
+        return enabled && Thread.currentThread().isVirtual();
+    }
+
+    /**
+     * Run a device call on a platform thread and wait for it.
+     *
+     * @param deviceCall the blocking native call.
+     * @return the status returned by the call.
+     */
+    static int call(final IntSupplier deviceCall)
+    {
+        CompletableFuture<Integer> result = CompletableFuture.supplyAsync(new Supplier<Integer>()
+        {
+            public Integer get()
+            {
+                return deviceCall.getAsInt();
+            }
+        }, Carriers.executor);
+
+        // the device call cannot be abandoned half way, it may be writing into the caller's buffer
+        boolean interrupted = false;
+        try
+        {
+            for (;;)
+            {
+                try
+                {
+                    return result.get();
+                }
+                catch (InterruptedException e)
+                {
+                    interrupted = true;
+                }
+                catch (ExecutionException e)
+                {
+                    if (e.getCause() instanceof RuntimeException)
+                    {
+                        throw (RuntimeException)e.getCause();
+                    }
+                    if (e.getCause() instanceof Error)
+                    {
+                        throw (Error)e.getCause();
+                    }
+                    throw new IllegalStateException("QRNG read failed", e.getCause());
+                }
+            }
+        }
+        finally
+        {
+            if (interrupted)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // created on first offloaded call only
+    private static class Carriers
+    {
+        private static final AtomicInteger count = new AtomicInteger();
+
+        static final ExecutorService executor = Executors.newFixedThreadPool(
+            Properties.asInteger(THREADS_PROPERTY, DEFAULT_THREADS), new ThreadFactory()
+            {
+                public Thread newThread(Runnable r)
+                {
+                    Thread t = new Thread(r, "Quside-Native-" + count.getAndIncrement());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+    }
+}
@@ -0,0 +1,38 @@
+package com.quside;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Assertions on the allocation behaviour of the calling thread.
+ */
+final class AllocationTesting {
+
+    private AllocationTesting() {
+    }
+
+    /**
+     * Assert that an action allocates nothing on the calling thread once warmed up.
+     *
+     * @param action     the action to measure.
+     * @param warmup     runs before the measurement, enough for the JIT to compile the action.
+     * @param iterations runs measured.
+     */
+    static void assertAllocationFree(String name, Runnable action, int warmup, int iterations) {
+        for (int i = 0; i < warmup; i++) {
+            action.run();
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long id = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(id);
+        for (int i = 0; i < iterations; i++) {
+            action.run();
+        }
+        long allocated = threads.getThreadAllocatedBytes(id) - before;
+
+        // allow for the bookkeeping of the measurement itself
+        assertTrue(allocated < 1024, name + " allocated " + allocated + " bytes");
+    }
+}
@@ -0,0 +1,80 @@
+package com.quside;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+public class BulkGeneratorTest {
+
+    private static final int CHUNK = 1000;
+
+    private static BulkGenerator newGenerator(DRBGMechanism mechanism) {
+        return new BulkGenerator(new QusideEntropySource(), mechanism, ForkJoinPool.commonPool(), CHUNK);
+    }
+
+    // every chunk is written and no two chunks start alike
+    private static void assertChunksDistinct(ByteBuffer buffer, int from, int to) {
+        Set<String> starts = new HashSet<String>();
+        for (int off = from; off < to; off += CHUNK) {
+            int end = Math.min(off + CHUNK, to);
+            int zeros = 0;
+            byte[] start = new byte[Math.min(16, end - off)];
+            for (int i = off; i != end; i++) {
+                zeros += (buffer.get(i) == 0) ? 1 : 0;
+                if (i - off < start.length) {
+                    start[i - off] = buffer.get(i);
+                }
+            }
+            assertTrue(zeros < (end - off) / 16 + 4, "chunk at " + off + " has " + zeros + " zeros");
+            assertTrue(starts.add(java.util.Arrays.toString(start)), "chunk at " + off + " repeated");
+        }
+    }
+
+    @Test
+    public void testFillArray() {
+        for (DRBGMechanism mechanism : DRBGMechanism.values()) {
+            byte[] output = new byte[10 * CHUNK + 123];
+            BulkStatistics stats = newGenerator(mechanism).fill(output);
+
+            assertEquals(output.length, stats.getBytes());
+            assertEquals(11, stats.getTasks());
+            assertEquals(mechanism.getAlgorithm(), stats.getAlgorithm());
+            assertTrue(stats.getGigabytesPerSecond() > 0);
+            assertChunksDistinct(ByteBuffer.wrap(output), 0, output.length);
+        }
+    }
+
+    @Test
+    public void testFillBufferRegion() {
+        ByteBuffer direct = ByteBuffer.allocateDirect(20 * CHUNK);
+        direct.position(100).limit(100 + 5 * CHUNK + 1);
+
+        BulkStatistics stats = newGenerator(DRBGMechanism.CTR_AES256).fill(direct);
+
+        assertEquals(5 * CHUNK + 1, stats.getBytes());
+        assertEquals(6, stats.getTasks());
+        assertEquals(direct.limit(), direct.position());
+
+        // nothing written outside the region
+        ByteBuffer all = direct.duplicate();
+        all.clear();
+        for (int i = 0; i != 100; i++) {
+            assertEquals(0, all.get(i));
+        }
+        for (int i = direct.limit(); i != all.capacity(); i++) {
+            assertEquals(0, all.get(i));
+        }
+        assertChunksDistinct(all, 100, direct.limit());
+    }
+
+    @Test
+    public void testEmptyAndConfiguration() {
+        assertEquals(0, new BulkGenerator("QRNG-CTR").fill(new byte[0]).getTasks());
+        assertEquals(DRBGMechanism.HMAC_SHA512, DRBGMechanism.forAlgorithm("qrng-hmac"));
+        assertThrows(IllegalArgumentException.class, () -> new BulkGenerator("QRNG-RC4"));
+    }
+}
@@ -0,0 +1,71 @@
+package com.quside;
+
+import com.quside.util.Hex;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CTRSP800DRBGTest {
+
+    private static CTRSP800DRBG newDRBG() {
+        return new CTRSP800DRBG(256, 256, new DRBGTesting.CountingEntropySource(), null, new byte[]{1});
+    }
+
+    @Test
+    public void testSelfTest() {
+        CTRSP800DRBG.selfTest();
+    }
+
+    @Test
+    public void testCAVPVector() {
+        // CAVP drbgvectors_no_reseed, CTR_DRBG [AES-256 use df], PredictionResistance = False, COUNT = 0
+        final byte[] entropy = Hex.decode("36401940fa8b1fba91a1661f211d78a0b9389a74e5bccfece8d766af1a6d3b14");
+        EntropySource source = new EntropySource() {
+            public boolean isPredictionResistant() {
+                return false;
+            }
+
+            public byte[] getEntropy() {
+                return entropy.clone();
+            }
+
+            public int entropySize() {
+                return 256;
+            }
+        };
+
+        CTRSP800DRBG drbg = new CTRSP800DRBG(256, 256, source, new byte[0], Hex.decode("496f25b0f1301b4f501be30380a137eb"));
+        byte[] output = new byte[64];
+        drbg.generate(output, new byte[0], false);
+        drbg.generate(output, new byte[0], false);
+
+        assertArrayEquals(Hex.decode("5862eb38bd558dd978a696e6df164782ddd887e7e9a6c9f3f1fbafb78941b535"
+            + "a64912dfd224c6dc7454e5250b3d97165e16260c2faf1cc7735cb75fb4f07e1d"), output);
+    }
+
+    @Test
+    public void testAdditionalInput() {
+        CTRSP800DRBG drbg = new CTRSP800DRBG(256, 256, new DRBGUtils.KATEntropyProvider().get(256),
+            Hex.decode("404142434445464748494A4B4C4D4E4F505152535455565758595A5B5C5D5E5F606162636465666768696A6B6C6D6E6F70717273747576"),
+            Hex.decode("2021222324"));
+        byte[] output = new byte[16];
+        drbg.generate(output, new byte[]{1, 2, 3}, false);
+
+        assertArrayEquals(Hex.decode("015ebce1b95aad2af341e9a28ee4733e"), output);
+    }
+
+    @Test
+    public void testOutputLengthsAreIndependentOfBatchSize() {
+        DRBGTesting.assertPrefixOfLongerRequest(CTRSP800DRBGTest::newDRBG, 4099, 32768);
+
+        // the state after a partial block matches a request rounded up to whole blocks
+        CTRSP800DRBG a = newDRBG();
+        a.generate(new byte[4099], null, false);
+        CTRSP800DRBG c = newDRBG();
+        c.generate(new byte[4112], null, false);
+        byte[] next = new byte[16];
+        byte[] expected = new byte[16];
+        a.generate(next, null, false);
+        c.generate(expected, null, false);
+        assertArrayEquals(expected, next);
+    }
+}
@@ -0,0 +1,60 @@
+package com.quside;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.function.Supplier;
+
+/**
+ * Fixtures and assertions shared by the DRBG tests.
+ */
+final class DRBGTesting {
+
+    private DRBGTesting() {
+    }
+
+    /**
+     * Deterministic entropy, a different block on every call.
+     */
+    static class CountingEntropySource implements EntropySource {
+        private int calls;
+
+        public boolean isPredictionResistant() {
+            return true;
+        }
+
+        public byte[] getEntropy() {
+            byte[] entropy = new byte[32];
+            for (int i = 0; i < entropy.length; i++) {
+                entropy[i] = (byte) (calls * 31 + i);
+            }
+            calls++;
+            return entropy;
+        }
+
+        public int entropySize() {
+            return 256;
+        }
+    }
+
+    /**
+     * Instantiate a DRBG of a mechanism over deterministic entropy, so that two calls give two
+     * DRBGs in the same state.
+     */
+    static SP80090DRBG newDRBG(DRBGMechanism mechanism) {
+        return mechanism.create(new CountingEntropySource(), 256, null, new byte[]{1});
+    }
+
+    /**
+     * Assert that a request is a prefix of any longer request made from the same state, however
+     * the DRBG cuts its output into blocks or batches.
+     */
+    static void assertPrefixOfLongerRequest(Supplier<? extends SP80090DRBG> factory, int shortLength, int longLength) {
+        byte[] shortOut = new byte[shortLength];
+        byte[] longOut = new byte[longLength];
+        factory.get().generate(shortOut, null, false);
+        factory.get().generate(longOut, null, false);
+        for (int i = 0; i < shortOut.length; i++) {
+            assertEquals(longOut[i], shortOut[i], "byte " + i);
+        }
+    }
+}
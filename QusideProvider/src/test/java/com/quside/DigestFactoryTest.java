@@ -0,0 +1,145 @@
+package com.quside;
+
+import com.quside.util.Hex;
+import com.quside.util.Strings;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DigestFactoryTest {
+
+    @Test
+    public void testSelectBackend() {
+        assertEquals(DigestFactory.INTERNAL, DigestFactory.selectBackend("internal"));
+        assertEquals(DigestFactory.JDK, DigestFactory.selectBackend(" JDK "));
+
+        String auto = DigestFactory.selectBackend("auto");
+        assertTrue(DigestFactory.INTERNAL.equals(auto) || DigestFactory.JDK.equals(auto), auto);
+
+        assertThrows(IllegalArgumentException.class, () -> DigestFactory.selectBackend("md5"));
+
+        assertTrue(DigestFactory.create(DigestFactory.INTERNAL, "SHA-512") instanceof SHA512Digest);
+        assertTrue(DigestFactory.create(DigestFactory.JDK, "SHA-512") instanceof JcaDigest);
+        // snapshots would be MessageDigest clones, HMac re-absorbs the pads instead
+        assertFalse(DigestFactory.create(DigestFactory.JDK, "SHA-512") instanceof Memoable);
+        assertThrows(IllegalArgumentException.class, () -> DigestFactory.create(DigestFactory.JDK, "MD5"));
+    }
+
+    @Test
+    public void testDigestVectors() {
+        // "abc" and five times the bytes 0..255 through every digest, on both backends
+        String[][] vectors = {
+            {"SHA-256", "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+                "d414b085826eb06778483ba35564dc849e643359f69ed9747878ba6e54985bed"},
+            {"SHA-384", "cb00753f45a35e8bb5a03d699ac65007272c32ab0eded1631a8b605a43ff5bed8086072ba1e7cc2358baeca134c825a7",
+                "f5943b1fe9e4b5bd3b45c83ef1e748f5e0f095f405a67d11a37016e5e908a4c5033bf084186d1e352db6fdda24dda58c"},
+            {"SHA-512", "ddaf35a193617abacc417349ae20413112e6fa4e89a97ea20a9eeee64b55d39a2192992a274fc1a836ba3c23a3feebbd454d4423643ce80e2a9ac94fa54ca49f",
+                "c93f55ccf2fa8c82699ff9b58afe3591242b135d908a6d865e17e38adb41c21d1d5359e51273036373d54d20b5659cc87e6e7b381ff027d33f971416cc590f90"},
+            {"SHA-512/256", "53048e2681941ef99b2e29b76b4c7dabe4c2d0c634fc6d46e0e2f13107e7af23",
+                "29cf77853d4ed12414976cdb42377b05c197eef3bb25eb4bd86e79f4e17c96bd"},
+        };
+        byte[] abc = Strings.toByteArray("abc");
+        byte[] ramp = new byte[1280];
+        for (int i = 0; i != ramp.length; i++) {
+            ramp[i] = (byte) i;
+        }
+
+        for (String backend : new String[]{DigestFactory.INTERNAL, DigestFactory.JDK}) {
+            for (String[] vector : vectors) {
+                Digest digest = DigestFactory.create(backend, vector[0]);
+                assertEquals(vector[0], digest.getAlgorithmName());
+                byte[] out = new byte[digest.getDigestSize()];
+
+                digest.update(abc, 0, abc.length);
+                assertEquals(out.length, digest.doFinal(out, 0));
+                assertArrayEquals(Hex.decode(vector[1]), out, backend + " " + vector[0]);
+
+                // split across a block boundary
+                digest.update(ramp, 0, 61);
+                digest.update(ramp[61]);
+                digest.update(ramp, 62, ramp.length - 62);
+                digest.doFinal(out, 0);
+                assertArrayEquals(Hex.decode(vector[2]), out, backend + " " + vector[0]);
+
+                // and again after a reset, from a snapshot of the empty state where there is one
+                Memoable empty = (digest instanceof Memoable) ? ((Memoable) digest).copy() : null;
+                digest.update(abc, 0, abc.length);
+                if (empty != null) {
+                    ((Memoable) digest).reset(empty);
+                } else {
+                    digest.reset();
+                }
+                digest.update(ramp, 0, ramp.length);
+                digest.doFinal(out, 0);
+                assertArrayEquals(Hex.decode(vector[2]), out, backend + " " + vector[0]);
+            }
+        }
+    }
+
+    @Test
+    public void testSelfTestsOnBothBackends() throws Exception {
+        for (String backend : new String[]{DigestFactory.INTERNAL, DigestFactory.JDK}) {
+            for (String algorithm : new String[]{"SHA-256", "SHA-384", "SHA-512", "SHA-512/256"}) {
+                HashSP800DRBG hash = new HashSP800DRBG(DigestFactory.create(backend, algorithm), 256,
+                    new DRBGUtils.KATEntropyProvider().get(256), new byte[256], new byte[256]);
+                hash.doSelfTest();
+                hash.doReseedSelfTest();
+            }
+        }
+
+        HMacSP800DRBG hmac = new HMacSP800DRBG(new HMac(DigestFactory.create(DigestFactory.JDK, "SHA-512")), 256,
+            new DRBGUtils.KATEntropyProvider().get(256), new byte[256], new byte[256]);
+        hmac.doSelfTest();
+        hmac.doReseedSelfTest();
+    }
+
+    @Test
+    public void testAutoFallsBackToInternal() {
+        // too short a budget to time enough rounds
+        assertEquals(DigestFactory.INTERNAL, DigestFactory.calibrate(0));
+
+        String auto = DigestFactory.calibrate(5L * 1000 * 1000);
+        assertTrue(DigestFactory.INTERNAL.equals(auto) || DigestFactory.JDK.equals(auto), auto);
+    }
+
+    @Test
+    public void testBackendsAgree() {
+        Digest internal = DigestFactory.create(DigestFactory.INTERNAL, "SHA-512");
+        Digest jdk = DigestFactory.create(DigestFactory.JDK, "SHA-512");
+        assertEquals(internal.getAlgorithmName(), jdk.getAlgorithmName());
+        assertEquals(internal.getDigestSize(), jdk.getDigestSize());
+        assertEquals(internal.getByteLength(), jdk.getByteLength());
+
+        byte[] data = new byte[1000];
+        new Random(20).nextBytes(data);
+        byte[] a = new byte[internal.getDigestSize() + 3];
+        byte[] b = new byte[jdk.getDigestSize() + 3];
+
+        internal.update(data[0]);
+        internal.update(data, 1, data.length - 1);
+        internal.doFinal(a, 3);
+        jdk.update(data[0]);
+        jdk.update(data, 1, data.length - 1);
+        assertEquals(jdk.getDigestSize(), jdk.doFinal(b, 3));
+        assertArrayEquals(a, b);
+
+        // HMac snapshots the pads of the internal digest, and re-absorbs them on the JDK one
+        byte[] key = Strings.toByteArray("key");
+        byte[] message = Strings.toByteArray("The quick brown fox jumps over the lazy dog");
+        HMac internalMac = new HMac(internal);
+        HMac jdkMac = new HMac(jdk);
+        internalMac.init(new KeyParameter(key));
+        jdkMac.init(new KeyParameter(key));
+        for (int i = 0; i != 2; i++) {
+            byte[] x = new byte[64];
+            byte[] y = new byte[64];
+            internalMac.update(message, 0, message.length);
+            internalMac.doFinal(x, 0);
+            jdkMac.update(message, 0, message.length);
+            jdkMac.doFinal(y, 0);
+            assertArrayEquals(x, y);
+        }
+    }
+}
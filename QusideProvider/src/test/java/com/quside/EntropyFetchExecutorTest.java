@@ -0,0 +1,57 @@
+package com.quside;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class EntropyFetchExecutorTest {
+
+    @Test
+    public void testQueueIsBoundedAndCancelledRequestsAreSkipped() throws Exception {
+        EntropyFetchExecutor executor = new EntropyFetchExecutor(1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+
+        CompletableFuture<Integer> busy = executor.submit(() -> {
+            started.countDown();
+            release.await();
+            return runs.incrementAndGet();
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<Integer> queued = executor.submit(runs::incrementAndGet);
+        assertEquals(1, executor.queued());
+
+        CompletableFuture<Integer> rejected = executor.submit(runs::incrementAndGet);
+        assertTrue(rejected.isCompletedExceptionally());
+        ExecutionException e = assertThrows(ExecutionException.class, rejected::get);
+        assertTrue(e.getCause() instanceof RejectedExecutionException);
+
+        assertTrue(queued.cancel(false));
+        assertEquals(0, executor.queued());
+
+        release.countDown();
+        assertEquals(1, busy.get(5, TimeUnit.SECONDS).intValue());
+
+        // the queue has room again and the cancelled request never ran
+        assertEquals(2, executor.submit(runs::incrementAndGet).get(5, TimeUnit.SECONDS).intValue());
+    }
+
+    @Test
+    public void testFailureIsPropagated() {
+        EntropyFetchExecutor executor = new EntropyFetchExecutor(1, 4);
+        CompletableFuture<Object> failed = executor.submit(() -> {
+            throw new IllegalStateException("QRNG read failed");
+        });
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+}
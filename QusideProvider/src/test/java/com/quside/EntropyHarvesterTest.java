@@ -0,0 +1,138 @@
+package com.quside;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class EntropyHarvesterTest {
+
+    // Hands out consecutive integers so every delivered word can be checked for reuse.
+    private static class CountingSource implements EntropyHarvester.WordSource {
+        private final AtomicInteger next = new AtomicInteger(1);
+
+        public int fetch(int[] words, int count) {
+            for (int i = 0; i < count; i++) {
+                words[i] = next.getAndIncrement();
+            }
+            return 0;
+        }
+    }
+
+    private static int word(byte[] b, int off) {
+        return (b[off] & 0xFF) | (b[off + 1] & 0xFF) << 8 | (b[off + 2] & 0xFF) << 16 | (b[off + 3] & 0xFF) << 24;
+    }
+
+    @Test
+    public void testTakeHonoursOffsetAndLength() {
+        EntropyHarvester harvester = new EntropyHarvester(new CountingSource(), 1024, 256, 768, 1);
+        int[] block = new int[EntropyHarvester.FETCH_WORDS];
+        new CountingSource().fetch(block, block.length);
+        assertEquals(block.length, harvester.offer(block, block.length));
+
+        byte[] dest = new byte[16];
+        assertTrue(harvester.take(dest, 3, 6));
+
+        assertEquals(0, dest[0] | dest[1] | dest[2]);
+        assertEquals(1, word(dest, 3));
+        assertEquals(2, dest[7]);
+        assertEquals(0, dest[8] | dest[9]);
+        assertEquals(block.length - 2, harvester.available());
+    }
+
+    @Test
+    public void testTakeAcrossRingWrapIsTailCorrect() {
+        EntropyHarvester harvester = new EntropyHarvester(new CountingSource(), 256, 64, 192, 1);
+        CountingSource source = new CountingSource();
+        int[] block = new int[EntropyHarvester.FETCH_WORDS];
+
+        for (int i = 0; i < 2; i++) {
+            source.fetch(block, block.length);
+            assertEquals(block.length, harvester.offer(block, block.length));
+        }
+        assertTrue(harvester.take(new byte[1000], 0, 1000));
+        source.fetch(block, block.length);
+        assertEquals(block.length, harvester.offer(block, block.length));
+
+        // words 251..256 sit at the end of the ring, 257.. wrapped round to the start
+        byte[] dest = new byte[160];
+        assertTrue(harvester.take(dest, 1, 157));
+        for (int i = 0; i < 39; i++) {
+            assertEquals(251 + i, word(dest, 1 + 4 * i));
+        }
+        assertEquals(290 & 0xFF, dest[157] & 0xFF);
+        assertEquals(0, dest[158] | dest[159] | dest[0]);
+    }
+
+    @Test
+    public void testTakeIsAllocationFree() {
+        EntropyHarvester harvester = new EntropyHarvester(new CountingSource(), 1 << 16, 1 << 10, 1 << 15, 1);
+        int[] block = new int[EntropyHarvester.FETCH_WORDS];
+        for (int i = 0; i < 256; i++) {
+            harvester.offer(block, block.length);
+        }
+
+        byte[] dest = new byte[37];
+        AllocationTesting.assertAllocationFree("take", () -> assertTrue(harvester.take(dest, 2, 35)), 1000, 2000);
+    }
+
+    @Test
+    public void testPartlyAcceptedBlockIsKept() throws InterruptedException {
+        // a low watermark above capacity - FETCH_WORDS: every refill finds less room than a block
+        AtomicInteger fetched = new AtomicInteger();
+        CountingSource counting = new CountingSource();
+        EntropyHarvester harvester = new EntropyHarvester((words, count) -> {
+            fetched.addAndGet(count);
+            return counting.fetch(words, count);
+        }, 256, 200, 250, 1).start();
+        try {
+            // a single consumer sees the words in the order the single worker fetched them
+            byte[] dest = new byte[4];
+            int words = 5000;
+            for (int i = 0; i < words; i++) {
+                long deadline = System.currentTimeMillis() + 5000;
+                while (!harvester.take(dest, 0, dest.length)) {
+                    assertTrue(System.currentTimeMillis() < deadline, "harvester stalled");
+                    Thread.yield();
+                }
+                assertEquals(i + 1, word(dest, 0), "words dropped before word " + i);
+            }
+            assertTrue(fetched.get() <= words + harvester.capacity() + EntropyHarvester.FETCH_WORDS, "fetched " + fetched.get());
+        } finally {
+            harvester.stop();
+        }
+    }
+
+    @Test
+    public void testTakeRefusedWhenRingEmpty() {
+        EntropyHarvester harvester = new EntropyHarvester(new CountingSource(), 1024, 256, 768, 1);
+        assertFalse(harvester.take(new byte[32], 0, 32));
+    }
+
+    @Test
+    public void testBackgroundFillAndNoWordReuse() throws InterruptedException {
+        EntropyHarvester harvester = new EntropyHarvester(new CountingSource(), 4096, 1024, 3072, 2).start();
+        try {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (harvester.available() < 3072 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+            assertTrue(harvester.available() >= 3072);
+
+            boolean[] seen = new boolean[1 << 16];
+            byte[] dest = new byte[32];
+            for (int i = 0; i < 1000; i++) {
+                while (!harvester.take(dest, 0, dest.length)) {
+                    Thread.yield();
+                }
+                for (int j = 0; j < dest.length; j += 4) {
+                    int w = word(dest, j);
+                    assertFalse(seen[w], "word delivered twice: " + w);
+                    seen[w] = true;
+                }
+            }
+        } finally {
+            harvester.stop();
+        }
+    }
+}
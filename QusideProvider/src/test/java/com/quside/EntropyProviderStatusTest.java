@@ -0,0 +1,119 @@
+package com.quside;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EntropyProviderStatusTest {
+
+    @Test
+    public void testStatusIsCached() {
+        assertTrue(EntropyProviderStatus.isReady());
+        assertEquals("READY", EntropyProviderStatus.getStatusMessage());
+        assertNull(EntropyProviderStatus.getErrorThrowable());
+
+        // a full KAT run takes milliseconds, a cached answer a few nanoseconds
+        long start = System.nanoTime();
+        for (int i = 0; i != 100000; i++) {
+            assertTrue(EntropyProviderStatus.isReady());
+            assertEquals("READY", EntropyProviderStatus.getStatusMessage());
+        }
+        assertTrue(System.nanoTime() - start < 2000L * 1000 * 1000, "status queries re-ran the self tests");
+    }
+
+    @Test
+    public void testRunSelfTest() {
+        assertTrue(EntropyProviderStatus.runSelfTest());
+        assertTrue(EntropyProviderStatus.isReady());
+        assertEquals("READY", EntropyProviderStatus.getStatusMessage());
+    }
+
+    private static boolean isSelfTestThreadAlive() {
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if ("Quside-SelfTest".equals(t.getName()) && t.isAlive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void testPowerOnModes() throws InterruptedException {
+        String previous = System.getProperty(EntropyProviderStatus.SELF_TEST_PROPERTY);
+        try {
+            // lazy: nothing runs until the status is asked for
+            EntropyProviderStatus.resetForTesting();
+            System.setProperty(EntropyProviderStatus.SELF_TEST_PROPERTY, "lazy");
+            new QusideProvider();
+            assertEquals(EntropyProviderStatus.State.UNTESTED, EntropyProviderStatus.getState());
+            assertTrue(EntropyProviderStatus.isReady());
+
+            // eager: the KATs have run by the time the constructor returns
+            EntropyProviderStatus.resetForTesting();
+            System.setProperty(EntropyProviderStatus.SELF_TEST_PROPERTY, "eager");
+            new QusideProvider();
+            assertEquals(EntropyProviderStatus.State.READY, EntropyProviderStatus.getState());
+
+            // background: holding the status lock keeps the self test thread from finishing
+            EntropyProviderStatus.resetForTesting();
+            System.setProperty(EntropyProviderStatus.SELF_TEST_PROPERTY, "background");
+            synchronized (EntropyProviderStatus.statusLock) {
+                new QusideProvider();
+                assertEquals(EntropyProviderStatus.State.TESTING, EntropyProviderStatus.getState());
+                assertEquals("SELF TEST RUNNING", EntropyProviderStatus.getStatusMessage());
+                assertFalse(EntropyProviderStatus.isReady());
+                assertTrue(isSelfTestThreadAlive());
+            }
+            long deadline = System.currentTimeMillis() + 10000;
+            while (EntropyProviderStatus.getState() == EntropyProviderStatus.State.TESTING && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+            assertEquals(EntropyProviderStatus.State.READY, EntropyProviderStatus.getState());
+            assertEquals("READY", EntropyProviderStatus.getStatusMessage());
+
+            System.setProperty(EntropyProviderStatus.SELF_TEST_PROPERTY, "never");
+            assertThrows(IllegalArgumentException.class, QusideProvider::new);
+        } finally {
+            if (previous == null) {
+                System.clearProperty(EntropyProviderStatus.SELF_TEST_PROPERTY);
+            } else {
+                System.setProperty(EntropyProviderStatus.SELF_TEST_PROPERTY, previous);
+            }
+        }
+        assertTrue(EntropyProviderStatus.isReady());
+    }
+
+    @Test
+    public void testConcurrentLazyQueriesWait() throws InterruptedException {
+        String previous = System.getProperty(EntropyProviderStatus.SELF_TEST_PROPERTY);
+        try {
+            System.setProperty(EntropyProviderStatus.SELF_TEST_PROPERTY, "lazy");
+            int caught = 0;
+            for (int round = 0; round != 50; round++) {
+                EntropyProviderStatus.resetForTesting();
+                new QusideProvider();
+
+                Thread first = new Thread(EntropyProviderStatus::isReady);
+                first.start();
+
+                // a query that lands while the first one is testing must wait for its outcome
+                while (EntropyProviderStatus.getState() == EntropyProviderStatus.State.UNTESTED) {
+                    Thread.yield();
+                }
+                if (EntropyProviderStatus.getState() == EntropyProviderStatus.State.TESTING) {
+                    caught++;
+                }
+                assertTrue(EntropyProviderStatus.isReady());
+                assertEquals("READY", EntropyProviderStatus.getStatusMessage());
+                first.join();
+            }
+            assertTrue(caught > 0, "never queried while the self test was running");
+        } finally {
+            if (previous == null) {
+                System.clearProperty(EntropyProviderStatus.SELF_TEST_PROPERTY);
+            } else {
+                System.setProperty(EntropyProviderStatus.SELF_TEST_PROPERTY, previous);
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.quside;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HMacSP800DRBGTest {
+
+    private static HMacSP800DRBG newDRBG() {
+        return new HMacSP800DRBG(new HMac(new SHA512Digest()), 256, new DRBGTesting.CountingEntropySource(), null, new byte[]{1});
+    }
+
+    @Test
+    public void testSelfTest() {
+        HMacSP800DRBG.selfTest();
+        assertTrue(EntropyProviderStatus.isReady());
+    }
+
+    @Test
+    public void testOutputLengthsAreIndependentOfBlockSize() {
+        DRBGTesting.assertPrefixOfLongerRequest(HMacSP800DRBGTest::newDRBG, 65, 200);
+        assertEquals(512, newDRBG().getBlockSize());
+    }
+
+    @Test
+    public void testAdditionalInputChangesOutput() {
+        HMacSP800DRBG a = newDRBG();
+        HMacSP800DRBG b = newDRBG();
+
+        byte[] outA = new byte[32];
+        byte[] outB = new byte[32];
+        a.generate(outA, null, false);
+        b.generate(outB, new byte[]{1}, false);
+        assertFalse(java.util.Arrays.equals(outA, outB));
+    }
+
+    @Test
+    public void testGenerateIsAllocationFree() {
+        HMacSP800DRBG drbg = newDRBG();
+        byte[] output = new byte[100];
+        byte[] additionalInput = new byte[]{1, 2, 3};
+        // warm up well past compilation, HMAC runs twice as many digests per call as Hash_DRBG
+        AllocationTesting.assertAllocationFree("generate", () -> drbg.generate(output, additionalInput, false), 20000, 2000);
+    }
+
+    @Test
+    public void testGenerateIsAllocationFreeOnJdkDigest() {
+        HMacSP800DRBG drbg = new HMacSP800DRBG(new HMac(DigestFactory.create(DigestFactory.JDK, "SHA-512")), 256,
+            new DRBGTesting.CountingEntropySource(), null, new byte[]{1});
+        byte[] output = new byte[100];
+        byte[] additionalInput = new byte[]{1, 2, 3};
+        AllocationTesting.assertAllocationFree("generate on the jdk digest", () -> drbg.generate(output, additionalInput, false), 20000, 2000);
+    }
+}
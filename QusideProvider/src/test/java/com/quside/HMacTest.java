@@ -0,0 +1,77 @@
+package com.quside;
+
+import com.quside.util.Hex;
+import com.quside.util.Strings;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HMacTest {
+
+    private static final byte[] KEY_1 = Hex.decode("0b0b0b0b0b0b0b0b0b0b0b0b0b0b0b0b0b0b0b0b");
+    private static final byte[] MESSAGE_1 = Strings.toByteArray("Hi There");
+    private static final byte[] MAC_1 = Hex.decode("87aa7cdea5ef619d4ff0b4241a1d6cb02379f4e2ce4ec2787ad0b30545e17cde"
+        + "daa833b7d6b8a702038b274eaea3f4e4be9d914eeb61f1702e696c203a126854");
+
+    private static final byte[] MESSAGE_6 = Strings.toByteArray("Test Using Larger Than Block-Size Key - Hash Key First");
+    private static final byte[] MAC_6 = Hex.decode("80b24263c7c1a3ebb71493c1dd7be8b49b46d1f41b4aeec1121b013783f8f352"
+        + "6b56d037e05f2598bd0fd2215d6a1e5295e64f73f63f0aec8b915a985d786598");
+
+    private static byte[] mac(HMac hmac, byte[] message) {
+        byte[] out = new byte[hmac.getMacSize()];
+        hmac.update(message, 0, message.length);
+        hmac.doFinal(out, 0);
+        return out;
+    }
+
+    @Test
+    public void testRfc4231() {
+        HMac hmac = new HMac(new SHA512Digest());
+
+        hmac.init(new KeyParameter(KEY_1));
+        assertArrayEquals(MAC_1, mac(hmac, MESSAGE_1));
+        // doFinal leaves the mac ready for the next message under the same key
+        assertArrayEquals(MAC_1, mac(hmac, MESSAGE_1));
+
+        // rekeying reuses the cached pad states
+        byte[] key6 = new byte[131];
+        java.util.Arrays.fill(key6, (byte) 0xaa);
+        hmac.init(new KeyParameter(key6));
+        assertArrayEquals(MAC_6, mac(hmac, MESSAGE_6));
+
+        hmac.init(new KeyParameter(KEY_1));
+        hmac.update(MESSAGE_6, 0, MESSAGE_6.length);
+        hmac.reset();
+        assertArrayEquals(MAC_1, mac(hmac, MESSAGE_1));
+    }
+
+    @Test
+    public void testDigestMemoable() {
+        byte[] expected = Hex.decode("ddaf35a193617abacc417349ae20413112e6fa4e89a97ea20a9eeee64b55d39a"
+            + "2192992a274fc1a836ba3c23a3feebbd454d4423643ce80e2a9ac94fa54ca49f");
+
+        // a snapshot taken part way through a word and after a full block
+        SHA512Digest digest = new SHA512Digest();
+        byte[] filler = new byte[128];
+        digest.update(filler, 0, filler.length);
+        digest.update((byte) 'a');
+        Memoable state = digest.copy();
+
+        byte[] out = new byte[64];
+        digest.update(Strings.toByteArray("xyz"), 0, 3);
+        digest.doFinal(out, 0);
+
+        digest.reset(state);
+        digest.update(Strings.toByteArray("xyz"), 0, 3);
+        byte[] again = new byte[64];
+        digest.doFinal(again, 0);
+        assertArrayEquals(out, again);
+
+        SHA512Digest fresh = new SHA512Digest();
+        Memoable empty = fresh.copy();
+        fresh.update(filler, 0, filler.length);
+        fresh.reset(empty);
+        fresh.update(Strings.toByteArray("abc"), 0, 3);
+        fresh.doFinal(out, 0);
+        assertArrayEquals(expected, out);
+    }
+}
@@ -0,0 +1,29 @@
+package com.quside;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HashSP800DRBGTest {
+
+    private static HashSP800DRBG newDRBG() {
+        return new HashSP800DRBG(new SHA512Digest(), 256, new DRBGTesting.CountingEntropySource(), null, new byte[]{1});
+    }
+
+    @Test
+    public void testSelfTest() {
+        HashSP800DRBG.selfTest();
+    }
+
+    @Test
+    public void testOutputLengthsAreIndependentOfBlockSize() {
+        DRBGTesting.assertPrefixOfLongerRequest(HashSP800DRBGTest::newDRBG, 65, 200);
+    }
+
+    @Test
+    public void testGenerateIsAllocationFree() {
+        HashSP800DRBG drbg = newDRBG();
+        byte[] output = new byte[100];
+        byte[] additionalInput = new byte[]{1, 2, 3};
+        AllocationTesting.assertAllocationFree("generate", () -> drbg.generate(output, additionalInput, false), 2000, 2000);
+    }
+}
@@ -0,0 +1,147 @@
+package com.quside;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class HealthTestsTest {
+
+    @Test
+    public void testCutoffsMatchSP80090B() {
+        // SP 800-90B Table 2, non-binary APT cutoffs for W = 512 and alpha = 2^-20
+        assertEquals(410, HealthTests.adaptiveProportionCutoff(0.5, 20, 512));
+        assertEquals(311, HealthTests.adaptiveProportionCutoff(1, 20, 512));
+        assertEquals(177, HealthTests.adaptiveProportionCutoff(2, 20, 512));
+        assertEquals(62, HealthTests.adaptiveProportionCutoff(4, 20, 512));
+        assertEquals(13, HealthTests.adaptiveProportionCutoff(8, 20, 512));
+
+        assertEquals(21, HealthTests.repetitionCountCutoff(1, 20));
+        assertEquals(4, HealthTests.repetitionCountCutoff(8, 20));
+
+        HealthTests tests = new HealthTests(0.98);
+        assertEquals(HealthTests.repetitionCountCutoff(8 * 0.98, HealthTests.ALPHA_EXPONENT), tests.getRepetitionCountCutoff());
+        assertEquals(HealthTests.adaptiveProportionCutoff(8 * 0.98, HealthTests.ALPHA_EXPONENT, HealthTests.WINDOW_SIZE), tests.getAdaptiveProportionCutoff());
+    }
+
+    @Test
+    public void testInvalidHminUsesDefault() {
+        HealthTests def = new HealthTests(HealthTests.DEFAULT_HMIN);
+        for (double hMin : new double[] { 0, -1, 1.5, Double.NaN }) {
+            HealthTests tests = new HealthTests(hMin);
+            assertEquals(def.getRepetitionCountCutoff(), tests.getRepetitionCountCutoff());
+            assertEquals(def.getAdaptiveProportionCutoff(), tests.getAdaptiveProportionCutoff());
+        }
+    }
+
+    @Test
+    public void testRandomDataPasses() {
+        HealthTests tests = new HealthTests(0.98);
+        byte[] data = new byte[1 << 20];
+        Random rnd = new Random(1);
+        for (int i = 0; i < 16; i++) {
+            rnd.nextBytes(data);
+            assertTrue(tests.test(data, 0, data.length));
+        }
+    }
+
+    @Test
+    public void testRepetitionSpanningReads() {
+        HealthTests tests = new HealthTests(0.98);
+        int cutoff = tests.getRepetitionCountCutoff();
+
+        byte[] data = new byte[100];
+        new Random(2).nextBytes(data);
+        data[data.length - 1] = 0x55;
+        assertTrue(tests.test(data, 0, data.length));
+
+        // the run started by the last byte above reaches the cutoff here
+        byte[] run = new byte[cutoff - 1];
+        Arrays.fill(run, (byte)0x55);
+        assertFalse(tests.test(run, 0, run.length));
+
+        tests.reset();
+        assertTrue(tests.test(run, 0, run.length));
+    }
+
+    @Test
+    public void testBiasedWindowFails() {
+        HealthTests tests = new HealthTests(0.98);
+        int cutoff = tests.getAdaptiveProportionCutoff();
+
+        // spread the copies of the first sample so that no run gets near the RCT cutoff
+        byte[] data = new byte[HealthTests.WINDOW_SIZE];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte)(1 + i % 251);
+        }
+        for (int i = 0; i < cutoff; i++) {
+            data[i * 2] = 0;
+        }
+        assertFalse(tests.test(data, 0, data.length));
+
+        for (int i = 0; i < cutoff - 1; i++) {
+            data[i * 2] = (byte)(1 + (i * 2) % 251);
+        }
+        tests.reset();
+        assertTrue(tests.test(data, 0, data.length));
+    }
+
+    @Test
+    public void testWordsAndDirectBuffers() {
+        HealthTests tests = new HealthTests(0.98);
+
+        int[] words = new int[128];
+        Random rnd = new Random(3);
+        for (int i = 0; i < words.length; i++) {
+            words[i] = rnd.nextInt();
+        }
+        assertTrue(tests.test(words, words.length));
+        words[10] = 0;
+        words[11] = 0;
+        assertFalse(tests.test(words, words.length));
+
+        tests.reset();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(4096);
+        for (int i = 0; i < buffer.capacity(); i++) {
+            buffer.put(i, (byte)rnd.nextInt());
+        }
+        assertTrue(tests.test(buffer, 0, buffer.capacity()));
+        for (int i = 0; i < 16; i++) {
+            buffer.put(2000 + i, (byte)7);
+        }
+        assertFalse(tests.test(buffer, 0, buffer.capacity()));
+        assertEquals(0, buffer.position());
+    }
+
+    @Test
+    public void testHealthFailureHoldsBoardOut() throws InterruptedException {
+        AtomicBoolean accept = new AtomicBoolean();
+        SimulatedQRNG qrng = new SimulatedQRNG(1, 0, 0, SimulatedQRNG.LatencyDistribution.FIXED, 0, 0, CalibrationStatus.CALIB_SUCCED, 0, 0) {
+            @Override
+            public int setCalibration(int devInd) {
+                return accept.get() ? super.setCalibration(devInd) : -1;
+            }
+        };
+        QRNGDeviceRegistry registry = new QRNGDeviceRegistry(qrng, 1, 0);
+        assertTrue(registry.isReady(0));
+
+        // held out for as long as recalibration is refused
+        registry.reportHealthFailure(0);
+        assertTrue(registry.isHealthFailed(0));
+        assertFalse(registry.isReady(0));
+        Thread.sleep(2 * QRNGDeviceRegistry.MIN_RECALIBRATION_MILLIS);
+        assertTrue(registry.isHealthFailed(0));
+        assertEquals(CalibrationStatus.CALIB_SUCCED, registry.getStatus(0));
+
+        accept.set(true);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (registry.isHealthFailed(0) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertFalse(registry.isHealthFailed(0));
+        assertTrue(registry.isReady(0));
+    }
+}
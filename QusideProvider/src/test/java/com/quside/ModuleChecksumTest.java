@@ -0,0 +1,107 @@
+package com.quside;
+
+import com.quside.util.Pack;
+import com.quside.util.Strings;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ModuleChecksumTest {
+
+    private static final byte[] KEY = Strings.toByteArray(EntropyProviderStatus.MODULE_HMAC_KEY);
+
+    private static void writeJar(File file, String[] names, byte[][] contents) throws IOException {
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(file));
+        try {
+            for (int i = 0; i != names.length; i++) {
+                out.putNextEntry(new JarEntry(names[i]));
+                out.write(contents[i]);
+                out.closeEntry();
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private static HMac mac() {
+        HMac hMac = new HMac(new SHA512Digest());
+        hMac.init(new KeyParameter(KEY));
+        return hMac;
+    }
+
+    // HMAC('[' || name || size || ']' || contents)
+    private static byte[] entryMac(String name, byte[] contents) {
+        HMac hMac = mac();
+        byte[] encName = Strings.toUTF8ByteArray(name);
+        hMac.update((byte) '[');
+        hMac.update(encName, 0, encName.length);
+        hMac.update(Pack.longToBigEndian(contents.length), 0, 8);
+        hMac.update((byte) ']');
+        hMac.update(contents, 0, contents.length);
+        byte[] out = new byte[64];
+        hMac.doFinal(out, 0);
+        return out;
+    }
+
+    @Test
+    public void testChecksum() throws Exception {
+        byte[] a = new byte[100000];
+        for (int i = 0; i != a.length; i++) {
+            a[i] = (byte) (i * 7);
+        }
+        byte[] b = Strings.toByteArray("quside");
+        File jar = File.createTempFile("module", ".jar");
+        try {
+            // entries in reverse name order, META-INF content is skipped bar the versions tree
+            writeJar(jar, new String[]{"com/quside/B.class", "com/quside/A.class", "META-INF/HMAC.SHA512",
+                    "META-INF/versions/21/com/quside/A.class"},
+                new byte[][]{b, a, b, b});
+
+            HMac hMac = mac();
+            hMac.update(entryMac("META-INF/versions/21/com/quside/A.class", b), 0, 64);
+            hMac.update(entryMac("com/quside/A.class", a), 0, 64);
+            hMac.update(entryMac("com/quside/B.class", b), 0, 64);
+            byte[] end = Strings.toByteArray("[END]");
+            hMac.update(end, 0, end.length);
+            byte[] expected = new byte[64];
+            hMac.doFinal(expected, 0);
+
+            assertArrayEquals(expected, ModuleChecksum.calculate(jar.getPath(), KEY));
+            long elapsed = ModuleChecksum.getLastElapsedNanos();
+            assertTrue(elapsed > 0);
+
+            // an unchanged jar is answered from the cache
+            byte[] cached = ModuleChecksum.calculate(jar.getPath(), KEY);
+            assertArrayEquals(expected, cached);
+            assertEquals(elapsed, ModuleChecksum.getLastElapsedNanos());
+            cached[0] ^= 1;
+            assertArrayEquals(expected, ModuleChecksum.calculate(jar.getPath(), KEY));
+
+            // a rewritten jar is not
+            writeJar(jar, new String[]{"com/quside/A.class"}, new byte[][]{a});
+            assertTrue(jar.setLastModified(jar.lastModified() + 2000));
+            byte[] changed = ModuleChecksum.calculate(jar.getPath(), KEY);
+            assertFalse(java.util.Arrays.equals(expected, changed));
+        } finally {
+            assertTrue(jar.delete());
+        }
+    }
+
+    @Test
+    public void testUnreadableJar() throws Exception {
+        File jar = File.createTempFile("module", ".jar");
+        try {
+            writeJar(jar, new String[]{"com/quside/A.class"}, new byte[][]{new byte[1]});
+            assertEquals(64, ModuleChecksum.calculate(jar.getPath(), KEY).length);
+            assertThrows(IOException.class, () -> ModuleChecksum.calculate(jar.getPath() + ".missing", KEY));
+        } finally {
+            assertTrue(jar.delete());
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.quside;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class QRNGDevicePoolTest {
+
+    // simulated boards that only accept a recalibration once refusals have run out
+    private static class RefusingQRNG extends SimulatedQRNG {
+        final AtomicInteger refusals;
+        final AtomicInteger calibrations = new AtomicInteger();
+
+        RefusingQRNG(int boards, int refusals) {
+            super(boards, 0, 0, LatencyDistribution.FIXED, 0, 0, CalibrationStatus.CALIB_SUCCED, 0, 0);
+            this.refusals = new AtomicInteger(refusals);
+        }
+
+        @Override
+        public int setCalibration(int devInd) {
+            calibrations.incrementAndGet();
+            return refusals.getAndDecrement() > 0 ? -1 : super.setCalibration(devInd);
+        }
+    }
+
+    private static int longestRun(byte[] data, int value) {
+        int longest = 0;
+        for (int i = 0, run = 0; i < data.length; i++) {
+            run = (data[i] == (byte) value) ? run + 1 : 0;
+            longest = Math.max(longest, run);
+        }
+        return longest;
+    }
+
+    private static void awaitRecalibrated(QRNGDeviceRegistry registry, int index) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (registry.isHealthFailed(index) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    private static long totalBytes(List<BoardStatistics> stats) {
+        long total = 0;
+        for (BoardStatistics s : stats) {
+            total += s.getBytes();
+        }
+        return total;
+    }
+
+    @Test
+    public void testStatisticsPerBoard() {
+        QRNGDevicePool pool = QRNGDevicePool.getInstance();
+        List<BoardStatistics> stats = pool.getStatistics();
+        assertEquals(pool.getBoardCount(), stats.size());
+        for (int i = 0; i < stats.size(); i++) {
+            assertEquals(i, stats.get(i).getIndex());
+        }
+    }
+
+    @Test
+    public void testRegistryCachesCalibrationStatus() {
+        QRNGDeviceRegistry registry = QRNGDeviceRegistry.getInstance();
+        int[] status = new int[1];
+        for (int i = 0; i < registry.getBoardCount(); i++) {
+            registry.getQRNG().getCalibrationStatus(i, status);
+            assertEquals(CalibrationStatus.fromCode(status[0]), registry.getStatus(i));
+            assertEquals(status[0] == 2, registry.isReady(i));
+        }
+        assertEquals(CalibrationStatus.I2C_ERROR, CalibrationStatus.fromCode(17));
+    }
+
+    @Test
+    public void testLargeRequestIsStriped() {
+        QRNGDevicePool pool = QRNGDevicePool.getInstance();
+        long before = totalBytes(pool.getStatistics());
+
+        byte[] dest = new byte[1024 * 1024 + 3];
+        pool.fill(dest, 0, dest.length);
+
+        assertEquals(before + dest.length, totalBytes(pool.getStatistics()));
+
+        // every stripe must have been written, a 64 byte run of zeros is not plausible
+        for (int off = 0; off + 64 <= dest.length; off += 64 * 1024) {
+            long acc = 0;
+            for (int i = 0; i < 64; i++) {
+                acc |= dest[off + i];
+            }
+            assertTrue(acc != 0, "unfilled region at " + off);
+        }
+    }
+
+    @Test
+    public void testSmallRequestsSpreadAcrossBoards() {
+        QRNGDevicePool pool = QRNGDevicePool.getInstance();
+        List<BoardStatistics> before = pool.getStatistics();
+
+        byte[] dest = new byte[32];
+        for (int i = 0; i < 4 * pool.getBoardCount(); i++) {
+            pool.fill(dest, 0, dest.length);
+        }
+
+        List<BoardStatistics> after = pool.getStatistics();
+        for (int i = 0; i < after.size(); i++) {
+            assertTrue(after.get(i).getRequests() > before.get(i).getRequests(), "board " + i + " unused");
+        }
+    }
+
+    @Test
+    public void testStuckBoardIsHeldOutAndRequestsReServed() {
+        RefusingQRNG qrng = new RefusingQRNG(2, Integer.MAX_VALUE);
+        QRNGDeviceRegistry registry = new QRNGDeviceRegistry(qrng, 2, 0);
+        QRNGDevicePool pool = new QRNGDevicePool(registry, 64 * 1024, true);
+        qrng.setStuck(1, true);
+
+        // small requests alternate between the boards until the stuck one fails
+        byte[] dest = new byte[256];
+        for (int i = 0; i < 8; i++) {
+            pool.fill(dest, 0, dest.length);
+            assertTrue(longestRun(dest, SimulatedQRNG.STUCK_BYTE) < 8, "stuck output was returned");
+        }
+
+        List<BoardStatistics> stats = pool.getStatistics();
+        assertEquals(0, stats.get(0).getHealthFailures());
+        assertEquals(1, stats.get(1).getHealthFailures());
+        assertFalse(stats.get(1).isHealthy());
+        assertTrue(registry.isHealthFailed(1));
+        assertFalse(registry.isReady(1));
+
+        // striped requests only go to the healthy board now
+        long before = stats.get(1).getRequests();
+        byte[] large = new byte[256 * 1024];
+        pool.fill(large, 0, large.length);
+        assertTrue(longestRun(large, SimulatedQRNG.STUCK_BYTE) < 8, "stuck output was returned");
+        assertEquals(before, pool.getStatistics().get(1).getRequests());
+    }
+
+    @Test
+    public void testStuckStripeIsReServed() {
+        RefusingQRNG qrng = new RefusingQRNG(2, Integer.MAX_VALUE);
+        QRNGDeviceRegistry registry = new QRNGDeviceRegistry(qrng, 2, 0);
+        QRNGDevicePool pool = new QRNGDevicePool(registry, 64 * 1024, true);
+        qrng.setStuck(0, true);
+
+        ByteBuffer dest = ByteBuffer.allocateDirect(256 * 1024);
+        pool.fill(dest, 0, dest.capacity());
+        byte[] copy = new byte[dest.capacity()];
+        dest.get(copy);
+        assertTrue(longestRun(copy, SimulatedQRNG.STUCK_BYTE) < 8, "stuck output was returned");
+        assertEquals(1, pool.getStatistics().get(0).getHealthFailures());
+    }
+
+    @Test
+    public void testAllBoardsFailing() {
+        RefusingQRNG qrng = new RefusingQRNG(1, Integer.MAX_VALUE);
+        QRNGDevicePool pool = new QRNGDevicePool(new QRNGDeviceRegistry(qrng, 1, 0), 64 * 1024, true);
+        qrng.setStuck(0, true);
+
+        // the output that failed is cleared before the exception reaches the caller
+        byte[] failed = new byte[64];
+        Arrays.fill(failed, (byte) 1);
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> pool.fill(failed, 2, 60));
+        assertEquals("QRNG output failed the continuous health tests", e.getMessage());
+        assertEquals(1, failed[0]);
+        assertEquals(1, failed[1]);
+        assertEquals(60, longestRun(failed, 0));
+        assertEquals(1, failed[62]);
+        assertEquals(1, failed[63]);
+        assertThrows(UnsupportedOperationException.class, () -> pool.fill(new byte[64], 0, 64));
+
+        // striped over several boards and into a direct buffer
+        RefusingQRNG striped = new RefusingQRNG(3, Integer.MAX_VALUE);
+        QRNGDevicePool stripedPool = new QRNGDevicePool(new QRNGDeviceRegistry(striped, 3, 0), 4096, true);
+        for (int i = 0; i != 3; i++) {
+            striped.setStuck(i, true);
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+        assertThrows(IllegalStateException.class, () -> stripedPool.fill(buffer, 0, buffer.capacity()));
+        for (int i = 0; i != buffer.capacity(); i++) {
+            assertEquals(0, buffer.get(i), "byte " + i);
+        }
+
+        // with the tests off the stuck output goes through
+        QRNGDevicePool unchecked = new QRNGDevicePool(new QRNGDeviceRegistry(qrng, 1, 0), 64 * 1024, false);
+        byte[] dest = new byte[64];
+        unchecked.fill(dest, 0, dest.length);
+        assertEquals(64, longestRun(dest, SimulatedQRNG.STUCK_BYTE));
+    }
+
+    @Test
+    public void testRefusedRecalibrationIsRetried() throws InterruptedException {
+        RefusingQRNG qrng = new RefusingQRNG(1, 2);
+        QRNGDeviceRegistry registry = new QRNGDeviceRegistry(qrng, 1, 0);
+        QRNGDevicePool pool = new QRNGDevicePool(registry, 64 * 1024, true);
+        qrng.setStuck(0, true);
+
+        assertThrows(RuntimeException.class, () -> pool.fill(new byte[64], 0, 64));
+        assertTrue(registry.isHealthFailed(0));
+        qrng.setStuck(0, false);
+
+        // refused twice, then accepted after the backoff
+        awaitRecalibrated(registry, 0);
+        assertFalse(registry.isHealthFailed(0));
+        assertTrue(registry.isReady(0));
+        assertEquals(3, qrng.calibrations.get());
+
+        byte[] dest = new byte[64];
+        pool.fill(dest, 0, dest.length);
+        assertTrue(pool.getStatistics().get(0).isHealthy());
+    }
+
+    @Test
+    public void testHarvesterDropsFailedFetches() throws InterruptedException {
+        RefusingQRNG qrng = new RefusingQRNG(1, Integer.MAX_VALUE);
+        QRNGDeviceRegistry registry = new QRNGDeviceRegistry(qrng, 1, 0);
+        final QRNGDevicePool pool = new QRNGDevicePool(registry, 64 * 1024, true);
+        qrng.setStuck(0, true);
+
+        int[] words = new int[EntropyHarvester.FETCH_WORDS];
+        assertNotEquals(0, pool.fetch(words, words.length));
+        assertEquals(1, pool.getStatistics().get(0).getHealthFailures());
+
+        EntropyHarvester harvester = new EntropyHarvester(pool::fetch, 1024, 256, 768, 1).start();
+        try {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (harvester.fetchErrors() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertTrue(harvester.fetchErrors() > 0);
+            assertEquals(0, harvester.available());
+            assertFalse(harvester.take(new byte[32], 0, 32));
+        } finally {
+            harvester.stop();
+        }
+    }
+}
@@ -2,6 +2,8 @@ package com.quside;
 
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
 import java.util.Arrays;
 
 public class QusideEntropySourceTest {
@@ -15,7 +17,9 @@ public class QusideEntropySourceTest {
     @Test
     public void testEntropySize() {
         QusideEntropySource entropySource = new QusideEntropySource();
-        assertEquals(32, entropySource.entropySize());
+        // in bits, one getEntropy() draw
+        assertEquals(256, entropySource.entropySize());
+        assertEquals(entropySource.entropySize(), 8 * entropySource.getEntropy().length);
     }
 
     @Test
@@ -42,5 +46,51 @@ public class QusideEntropySourceTest {
         assertEquals(32, dest.length);
     }
 
-}
+    @Test
+    public void testGetRandomBytesHonoursOffsetAndLength() {
+        QusideEntropySource entropySource = new QusideEntropySource();
+        byte[] dest = new byte[48];
+        Arrays.fill(dest, (byte) 0x5A);
+
+        long result = entropySource.getRandomBytes(dest, 5, 39);
+
+        assertEquals(39, result);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0x5A, dest[i]);
+        }
+        for (int i = 44; i < 48; i++) {
+            assertEquals(0x5A, dest[i]);
+        }
+        // the partial trailing word must be filled as well, 3 bytes all left at 0x5A is not plausible
+        assertFalse(dest[41] == 0x5A && dest[42] == 0x5A && dest[43] == 0x5A);
+        assertThrows(ArrayIndexOutOfBoundsException.class, () -> entropySource.getRandomBytes(dest, 40, 9));
+    }
+
+    @Test
+    public void testGetRandomBytesIsAllocationFree() {
+        QusideEntropySource entropySource = new QusideEntropySource();
+        byte[] dest = new byte[35];
+        AllocationTesting.assertAllocationFree("getRandomBytes", () -> entropySource.getRandomBytes(dest, 1, 33), 1000, 2000);
+    }
 
+    @Test
+    public void testGetEntropyAsync() throws Exception {
+        QusideEntropySource entropySource = new QusideEntropySource();
+        byte[] entropy = entropySource.getEntropyAsync(48).get(5, TimeUnit.SECONDS);
+        assertEquals(48, entropy.length);
+        assertFalse(Arrays.equals(new byte[48], entropy));
+        assertThrows(IllegalArgumentException.class, () -> entropySource.getEntropyAsync(-1));
+    }
+
+    @Test
+    public void testGetRandomBytesAsyncFillsBuffer() throws Exception {
+        QusideEntropySource entropySource = new QusideEntropySource();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64);
+        buffer.position(8).limit(40);
+
+        assertSame(buffer, entropySource.getRandomBytesAsync(buffer).get(5, TimeUnit.SECONDS));
+        assertEquals(40, buffer.position());
+        buffer.clear();
+        assertEquals(0, buffer.get(0) | buffer.get(7) | buffer.get(40) | buffer.get(63));
+    }
+}
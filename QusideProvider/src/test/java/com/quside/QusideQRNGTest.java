@@ -3,6 +3,8 @@ package com.quside;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.nio.ByteBuffer;
+
 public class QusideQRNGTest {
 
     @Test
@@ -24,6 +26,53 @@ public class QusideQRNGTest {
         assertEquals(Nuint32, memSlot.length);
     }
 
+    @Test
+    public void testGetRandomBytes() {
+        QusideQRNG qrng = new QusideQRNG();
+        byte[] dest = new byte[1030];
+        int result = qrng.getRandomBytes(dest, 3, 1025, 0);
+        assertEquals(0, result);
+        assertEquals(0, dest[0] | dest[1] | dest[2] | dest[1028] | dest[1029]);
+        assertThrows(ArrayIndexOutOfBoundsException.class, () -> qrng.getRandomBytes(dest, 8, 1025, 0));
+    }
+
+    @Test
+    public void testLargeRequestsAreFilledInFull() {
+        // read over several critical regions, every piece must be filled and nothing outside it
+        QusideQRNG qrng = new QusideQRNG();
+        byte[] dest = new byte[200010];
+        assertEquals(0, qrng.getRandomBytes(dest, 3, 200003, 0));
+        assertEquals(0, dest[0] | dest[1] | dest[2] | dest[200006] | dest[200007] | dest[200008] | dest[200009]);
+        for (int pos = 3; pos < 200006; pos += 1024) {
+            int or = 0;
+            for (int i = pos; i < Math.min(pos + 1024, 200006); i++) {
+                or |= dest[i];
+            }
+            assertNotEquals(0, or, "no data at byte " + pos);
+        }
+
+        int[] words = new int[50001];
+        assertEquals(0, qrng.getRandom(words, 50000, 0));
+        assertEquals(0, words[50000]);
+        for (int pos = 0; pos < 50000; pos += 256) {
+            int or = 0;
+            for (int i = pos; i < Math.min(pos + 256, 50000); i++) {
+                or |= words[i];
+            }
+            assertNotEquals(0, or, "no data at word " + pos);
+        }
+    }
+
+    @Test
+    public void testGetRandomBuffer() {
+        QusideQRNG qrng = new QusideQRNG();
+        ByteBuffer direct = ByteBuffer.allocateDirect(64);
+        int result = qrng.getRandomBuffer(direct, 16, 32, 0);
+        assertEquals(0, result);
+        assertEquals(0, direct.getLong(0) | direct.getLong(8) | direct.getLong(48) | direct.getLong(56));
+        assertThrows(IllegalArgumentException.class, () -> qrng.getRandomBuffer(ByteBuffer.allocate(64), 0, 32, 0));
+    }
+
     @Test
     public void testQualityQFactor() {
         QusideQRNG qrng = new QusideQRNG();
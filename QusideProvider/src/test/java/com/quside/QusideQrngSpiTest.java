@@ -0,0 +1,193 @@
+package com.quside;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class QusideQrngSpiTest {
+
+    // Counts the entropy draws made by instantiation and reseeds.
+    private static class CountingEntropySource extends QusideEntropySource {
+        final AtomicInteger draws = new AtomicInteger();
+
+        @Override
+        public byte[] getEntropy() {
+            draws.incrementAndGet();
+            return super.getEntropy();
+        }
+    }
+
+    private static int drawsFor(String policy, int requests) {
+        return drawsFor(policy, requests, 16);
+    }
+
+    private static int drawsFor(String policy, int requests, int size) {
+        CountingEntropySource qes = new CountingEntropySource();
+        QusideQrngSpi spi = new QusideQrngSpi(qes, 1, ReseedPolicy.parse(policy));
+        for (int i = 0; i < requests; i++) {
+            spi.engineNextBytes(new byte[size]);
+        }
+        return qes.draws.get();
+    }
+
+    @Test
+    public void testShardCountIsPowerOfTwo() {
+        QusideEntropySource qes = new QusideEntropySource();
+        assertEquals(1, new QusideQrngSpi(qes, 0, ReseedPolicy.ALWAYS).getShardCount());
+        assertEquals(8, new QusideQrngSpi(qes, 5, ReseedPolicy.ALWAYS).getShardCount());
+        assertEquals(256, new QusideQrngSpi(qes, 100000, ReseedPolicy.ALWAYS).getShardCount());
+    }
+
+    @Test
+    public void testServicesAreThreadSafe() {
+        QusideProvider provider = new QusideProvider();
+        assertEquals("true", provider.getService("SecureRandom", "QRNG").getAttribute("ThreadSafe"));
+        assertEquals("true", provider.getService("SecureRandom", "QRNG-HMAC").getAttribute("ThreadSafe"));
+        assertEquals("true", provider.getService("SecureRandom", "QRNG-CTR").getAttribute("ThreadSafe"));
+        assertEquals("true", provider.getService("SecureRandom", "QES").getAttribute("ThreadSafe"));
+    }
+
+    @Test
+    public void testServiceTable() throws Exception {
+        QusideProvider provider = new QusideProvider();
+
+        // one prebuilt instance per service, whatever name or case it is asked for by
+        java.security.Provider.Service qrng = provider.getService("SecureRandom", "QRNG");
+        assertSame(qrng, provider.getService("SecureRandom", "QRNG"));
+        assertSame(qrng, provider.getService("SecureRandom", "qrng"));
+        assertSame(qrng, provider.getService("SecureRandom", "QRNG-SHA512"));
+        assertSame(qrng, provider.getService("SecureRandom", "QRNG-Hash"));
+        assertSame(provider.getService("SecureRandom", "QRNG-CTR"), provider.getService("SecureRandom", "QRNG-CTR-AES256"));
+        assertSame(provider.getService("SecureRandom", "QRNG-HMAC"), provider.getService("SecureRandom", "qrng-hmac-sha512"));
+        assertSame(provider.getService("SecureRandom", "QES"), provider.getService("SecureRandom", "qes"));
+
+        assertNull(provider.getService("SecureRandom", "DRBG"));
+        assertNull(provider.getService("SecureRandom", null));
+        assertNull(provider.getService("MessageDigest", "QRNG"));
+
+        assertEquals("Software", qrng.getAttribute("ImplementedIn"));
+        assertEquals("256", qrng.getAttribute("SecurityStrength"));
+        assertEquals("Hardware", provider.getService("SecureRandom", "QES").getAttribute("ImplementedIn"));
+        assertEquals(DRBGMechanism.values().length + 1, provider.getServices().size());
+
+        // aliases also work through the JCA
+        assertSame(provider, SecureRandom.getInstance("QRNG-CTR-AES256", provider).getProvider());
+        assertEquals(DRBGMechanism.CTR_AES256, DRBGMechanism.forAlgorithm("qrng-ctr-aes256"));
+    }
+
+    @Test
+    public void testAdvertisedStrengthIsInstantiated() {
+        QusideProvider provider = new QusideProvider();
+        QusideEntropySource qes = new QusideEntropySource();
+        for (DRBGMechanism mechanism : DRBGMechanism.values()) {
+            String advertised = provider.getService("SecureRandom", mechanism.getAlgorithm()).getAttribute("SecurityStrength");
+            QusideQrngSpi spi = new QusideQrngSpi(qes, mechanism, 1, ReseedPolicy.ALWAYS);
+            assertEquals(Integer.parseInt(advertised), spi.newDRBG(0).getSecurityStrength(), mechanism.getAlgorithm());
+        }
+    }
+
+    @Test
+    public void testSharedInstanceAcrossThreads() throws InterruptedException {
+        SecureRandom random = new SecureRandom(new QusideQrngSpi(new QusideEntropySource(), 4, ReseedPolicy.ALWAYS), new QusideProvider()) { };
+        Set<String> outputs = Collections.synchronizedSet(new HashSet<String>());
+        Thread[] threads = new Thread[8];
+        Throwable[] failure = new Throwable[1];
+
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                try {
+                    for (int j = 0; j < 200; j++) {
+                        byte[] bytes = new byte[16];
+                        random.nextBytes(bytes);
+                        assertTrue(outputs.add(java.util.Arrays.toString(bytes)), "repeated output");
+                    }
+                } catch (Throwable t) {
+                    failure[0] = t;
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        assertNull(failure[0]);
+        assertEquals(threads.length * 200, outputs.size());
+    }
+
+    @Test
+    public void testReseedPolicyParsing() {
+        assertSame(ReseedPolicy.ALWAYS, ReseedPolicy.parse(" Always "));
+        assertEquals("calls:1000", ReseedPolicy.parse("calls:1000").toString());
+        assertEquals(ReseedPolicy.Kind.MILLIS, ReseedPolicy.parse("MILLIS: 250").getKind());
+        assertEquals(250, ReseedPolicy.parse("millis:250").getLimit());
+        assertThrows(IllegalArgumentException.class, () -> ReseedPolicy.parse("sometimes"));
+        assertThrows(IllegalArgumentException.class, () -> ReseedPolicy.parse("calls:0"));
+        assertThrows(IllegalArgumentException.class, () -> ReseedPolicy.parse("bytes:lots"));
+        assertThrows(IllegalArgumentException.class, () -> ReseedPolicy.parse("always:3"));
+    }
+
+    @Test
+    public void testReseedCounts() {
+        // one draw to instantiate, then one per reseed
+        assertEquals(13, drawsFor("always", 12));
+        assertEquals(3, drawsFor("calls:4", 12));
+        assertEquals(3, drawsFor("bytes:64", 12));
+        assertEquals(1, drawsFor("millis:60000", 12));
+    }
+
+    @Test
+    public void testLargeRequestReseeds() {
+        // prediction resistance covers every generate request a large nextBytes is split into
+        int maxRequest = DRBGTesting.newDRBG(DRBGMechanism.HASH_SHA512).getMaxBitsPerRequest() / 8;
+        assertEquals(1 + 5, drawsFor("always", 1, 4 * maxRequest + 1));
+
+        // a byte limit is never overshot, the request is split at it: 64 + 64 + 64 + 8 bytes
+        assertEquals(1 + 3, drawsFor("bytes:64", 1, 200));
+        // the second request first takes the 56 bytes left under the limit: 56 + 64 + 64 + 16
+        assertEquals(1 + 3 + 3, drawsFor("bytes:64", 2, 200));
+        assertEquals(1 + 4095, drawsFor("bytes:256", 1, 1 << 20));
+    }
+
+    @Test
+    public void testBackgroundReseed() throws InterruptedException {
+        CountingEntropySource qes = new CountingEntropySource();
+        QusideQrngSpi spi = new QusideQrngSpi(qes, 1, ReseedPolicy.parse("millis:40"));
+        spi.engineNextBytes(new byte[16]);
+
+        Thread.sleep(300);
+
+        // reseeded in the background without any further requests
+        assertTrue(qes.draws.get() >= 4, "draws: " + qes.draws.get());
+    }
+
+    @Test
+    public void testMechanismSelection() throws Exception {
+        QusideProvider provider = new QusideProvider();
+        assertEquals(DRBGMechanism.HASH_SHA512, ((QusideQrngSpi) provider.getService("SecureRandom", "QRNG").newInstance(null)).getMechanism());
+        assertEquals(DRBGMechanism.HMAC_SHA512, ((QusideQrngSpi) provider.getService("SecureRandom", "QRNG-HMAC").newInstance(null)).getMechanism());
+        assertEquals(DRBGMechanism.CTR_AES256, ((QusideQrngSpi) provider.getService("SecureRandom", "QRNG-CTR").newInstance(null)).getMechanism());
+        assertEquals(DRBGMechanism.HASH_SHA256, ((QusideQrngSpi) provider.getService("SecureRandom", "QRNG-SHA256").newInstance(null)).getMechanism());
+        assertEquals(DRBGMechanism.HASH_SHA384, ((QusideQrngSpi) provider.getService("SecureRandom", "QRNG-SHA384").newInstance(null)).getMechanism());
+        assertEquals(DRBGMechanism.HASH_SHA512_256, ((QusideQrngSpi) provider.getService("SecureRandom", "QRNG-SHA512/256").newInstance(null)).getMechanism());
+
+        SecureRandom random = SecureRandom.getInstance("QRNG-HMAC", provider);
+        byte[] a = new byte[32];
+        byte[] b = new byte[32];
+        random.nextBytes(a);
+        random.nextBytes(b);
+        assertFalse(java.util.Arrays.equals(a, b));
+    }
+
+    @Test
+    public void testProviderConfiguration() {
+        assertEquals(ReseedPolicy.parse("bytes:4096"), new QusideProvider("bytes:4096").getReseedPolicy());
+        assertEquals(ReseedPolicy.parse("calls:10"), ((QusideProvider) new QusideProvider().configure("--calls:10")).getReseedPolicy());
+        assertThrows(IllegalArgumentException.class, () -> new QusideProvider("never"));
+    }
+}
@@ -0,0 +1,64 @@
+package com.quside;
+
+import com.quside.util.Hex;
+import com.quside.util.Strings;
+import org.junit.jupiter.api.Test;
+
+import java.security.MessageDigest;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SHA512DigestTest {
+
+    private static byte[] digest(SHA512Digest digest) {
+        byte[] out = new byte[digest.getDigestSize()];
+        digest.doFinal(out, 0);
+        return out;
+    }
+
+    @Test
+    public void testFips180Vectors() {
+        SHA512Digest digest = new SHA512Digest();
+
+        byte[] abc = Strings.toByteArray("abc");
+        digest.update(abc, 0, abc.length);
+        assertArrayEquals(Hex.decode("ddaf35a193617abacc417349ae20413112e6fa4e89a97ea20a9eeee64b55d39a"
+            + "2192992a274fc1a836ba3c23a3feebbd454d4423643ce80e2a9ac94fa54ca49f"), digest(digest));
+
+        // one million 'a', fed in a single call through the block path
+        byte[] million = new byte[1000000];
+        java.util.Arrays.fill(million, (byte) 'a');
+        digest.update(million, 0, million.length);
+        assertArrayEquals(Hex.decode("e718483d0ce769644e2e42c7bc15b4638e1f98b13b2044285632a803afa973eb"
+            + "de0ff244877ea60a4cb0432ce577c31beb009c5c2c49aa2e4eadb217ad8cc09b"), digest(digest));
+    }
+
+    @Test
+    public void testSplitUpdatesMatchJdk() throws Exception {
+        MessageDigest jdk = MessageDigest.getInstance("SHA-512");
+        SHA512Digest digest = new SHA512Digest();
+        Random random = new Random(19);
+
+        byte[] data = new byte[4096 + 7];
+        random.nextBytes(data);
+
+        for (int i = 0; i != 200; i++) {
+            // random odd offsets and lengths, so blocks start both on and off word boundaries
+            int off = 0;
+            while (off < data.length) {
+                int len = Math.min(data.length - off, random.nextInt(300));
+                if (random.nextInt(8) == 0 && len > 0) {
+                    digest.update(data[off]);
+                    len = 1;
+                } else {
+                    digest.update(data, off, len);
+                }
+                off += len;
+            }
+            jdk.update(data, 0, data.length);
+
+            assertArrayEquals(jdk.digest(), digest(digest), "iteration " + i);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.quside;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+
+public class SP80090DRBGTest {
+
+    // larger than one request of any of the DRBGs
+    private static final int LENGTH = 100000 + 3;
+
+    private static byte[] expected(DRBGMechanism mechanism) {
+        byte[] output = new byte[LENGTH];
+        DRBGTesting.newDRBG(mechanism).fill(output, 0, output.length, null, false);
+        return output;
+    }
+
+    @Test
+    public void testFillSplitsIntoRequests() {
+        for (DRBGMechanism mechanism : DRBGMechanism.values()) {
+            SP80090DRBG drbg = DRBGTesting.newDRBG(mechanism);
+            int maxRequest = drbg.getMaxBitsPerRequest() / 8;
+
+            assertThrows(IllegalArgumentException.class, () -> drbg.generate(new byte[maxRequest + 1], null, false));
+
+            // the same as consecutive requests of the maximum size
+            SP80090DRBG reference = DRBGTesting.newDRBG(mechanism);
+            byte[] first = new byte[maxRequest];
+            reference.generate(first, null, false);
+
+            byte[] output = expected(mechanism);
+            for (int i = 0; i != maxRequest; i++) {
+                assertEquals(first[i], output[i]);
+            }
+        }
+    }
+
+    @Test
+    public void testOffsetGenerate() {
+        for (DRBGMechanism mechanism : DRBGMechanism.values()) {
+            byte[] plain = new byte[100];
+            DRBGTesting.newDRBG(mechanism).generate(plain, null, false);
+
+            byte[] padded = new byte[110];
+            DRBGTesting.newDRBG(mechanism).generate(padded, 7, 100, null, false);
+
+            assertEquals(0, padded[6]);
+            assertEquals(0, padded[107]);
+            for (int i = 0; i != plain.length; i++) {
+                assertEquals(plain[i], padded[i + 7]);
+            }
+
+            assertThrows(ArrayIndexOutOfBoundsException.class, () -> DRBGTesting.newDRBG(mechanism).generate(padded, 20, 100, null, false));
+        }
+    }
+
+    @Test
+    public void testByteBuffers() {
+        for (DRBGMechanism mechanism : DRBGMechanism.values()) {
+            byte[] expected = expected(mechanism);
+
+            ByteBuffer heap = ByteBuffer.allocate(LENGTH + 10);
+            heap.position(10);
+            ByteBuffer slice = heap.slice();
+            DRBGTesting.newDRBG(mechanism).generate(slice, null, false);
+            assertFalse(slice.hasRemaining());
+            for (int i = 0; i != LENGTH; i++) {
+                assertEquals(expected[i], heap.get(10 + i));
+            }
+
+            ByteBuffer direct = ByteBuffer.allocateDirect(LENGTH);
+            DRBGTesting.newDRBG(mechanism).generate(direct, null, false);
+            assertFalse(direct.hasRemaining());
+            for (int i = 0; i != LENGTH; i++) {
+                assertEquals(expected[i], direct.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testStreams() throws Exception {
+        for (DRBGMechanism mechanism : DRBGMechanism.values()) {
+            byte[] expected = expected(mechanism);
+
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            DRBGTesting.newDRBG(mechanism).generate(stream, LENGTH, null, false);
+            assertArrayEquals(expected, stream.toByteArray());
+
+            ByteArrayOutputStream channel = new ByteArrayOutputStream();
+            DRBGTesting.newDRBG(mechanism).generate(Channels.newChannel(channel), LENGTH, null, false);
+            assertArrayEquals(expected, channel.toByteArray());
+        }
+    }
+
+    @Test
+    public void testLargeNextBytes() {
+        QusideQrngSpi spi = new QusideQrngSpi(new QusideEntropySource(), 1, ReseedPolicy.ALWAYS);
+        byte[] bytes = new byte[1 << 20];
+        spi.engineNextBytes(bytes);
+
+        // not left as zeros past the first request
+        int zeros = 0;
+        for (int i = bytes.length - 1024; i != bytes.length; i++) {
+            zeros += (bytes[i] == 0) ? 1 : 0;
+        }
+        assertTrue(zeros < 64, "zeros: " + zeros);
+    }
+}
@@ -0,0 +1,113 @@
+package com.quside;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+
+public class SimulatedQRNGTest {
+
+    private static SimulatedQRNG device(int boards, long latencyMicros, long bytesPerSecond, double errorRate, long calibrationMillis) {
+        return new SimulatedQRNG(boards, latencyMicros, 0, SimulatedQRNG.LatencyDistribution.FIXED,
+            bytesPerSecond, errorRate, CalibrationStatus.CALIB_SUCCED, calibrationMillis, 0);
+    }
+
+    @Test
+    public void testMethodSurface() {
+        SimulatedQRNG qrng = device(3, 0, 0, 0, 0);
+        assertEquals(3, qrng.findBoards());
+
+        float[] value = new float[1];
+        assertEquals(0, qrng.qualityQFactor(2, value));
+        assertEquals(0.9f, value[0], 0.0001);
+        assertEquals(0, qrng.getHmin(2, value));
+        assertEquals(0.98f, value[0], 0.0001);
+        assertEquals(-1, qrng.getHmin(3, value));
+
+        int[] words = new int[8];
+        assertEquals(0, qrng.getRandom(words, 8, 1));
+        assertThrows(ArrayIndexOutOfBoundsException.class, () -> qrng.getRandom(words, 9, 1));
+
+        byte[] dest = new byte[16];
+        assertEquals(0, qrng.getRandomBytes(dest, 3, 10, 0));
+        assertEquals(0, dest[0] | dest[1] | dest[2] | dest[13] | dest[14] | dest[15]);
+        assertThrows(ArrayIndexOutOfBoundsException.class, () -> qrng.getRandomBytes(dest, 8, 9, 0));
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(32);
+        assertEquals(0, qrng.getRandomBuffer(buffer, 4, 27, 0));
+        assertEquals(0, buffer.get(0) | buffer.get(31));
+        assertThrows(IllegalArgumentException.class, () -> qrng.getRandomBuffer(ByteBuffer.allocate(8), 0, 8, 0));
+    }
+
+    @Test
+    public void testCalibrationTransitions() throws InterruptedException {
+        SimulatedQRNG qrng = device(1, 0, 0, 0, 50);
+        int[] status = new int[1];
+
+        assertEquals(0, qrng.setCalibration(0));
+        assertEquals(0, qrng.getCalibrationStatus(0, status));
+        assertEquals(CalibrationStatus.CALIBRATING.ordinal(), status[0]);
+        assertEquals(-1, qrng.getRandom(new int[4], 4, 0));
+
+        Thread.sleep(80);
+        qrng.getCalibrationStatus(0, status);
+        assertEquals(CalibrationStatus.CALIB_SUCCED.ordinal(), status[0]);
+        assertEquals(0, qrng.getRandom(new int[4], 4, 0));
+
+        qrng.setStatus(0, CalibrationStatus.I2C_ERROR);
+        qrng.getCalibrationStatus(0, status);
+        assertEquals(CalibrationStatus.I2C_ERROR.ordinal(), status[0]);
+    }
+
+    @Test
+    public void testErrorInjection() {
+        SimulatedQRNG qrng = device(1, 0, 0, 0.5, 0);
+        int failures = 0;
+        for (int i = 0; i < 2000; i++) {
+            if (qrng.getRandom(new int[1], 1, 0) != 0) {
+                failures++;
+            }
+        }
+        assertTrue(failures > 800 && failures < 1200, "failures: " + failures);
+    }
+
+    @Test
+    public void testLatencyAndThroughputCap() {
+        // 1 MB/s and 1 ms per read: 10 reads of 10000 bytes need at least 110 ms
+        SimulatedQRNG qrng = device(1, 1000, 1000000, 0, 0);
+        byte[] dest = new byte[10000];
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, qrng.getRandomBytes(dest, 0, dest.length, 0));
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        assertTrue(elapsedMillis >= 110, "elapsed: " + elapsedMillis);
+    }
+
+    @Test
+    public void testReadsOnOneBoardAreSerialised() throws InterruptedException {
+        SimulatedQRNG qrng = device(2, 20000, 0, 0, 0);
+        Thread[] readers = new Thread[4];
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = new Thread(() -> qrng.getRandom(new int[1], 1, 0));
+        }
+
+        long start = System.nanoTime();
+        for (Thread t : readers) {
+            t.start();
+        }
+        for (Thread t : readers) {
+            t.join();
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        assertTrue(elapsedMillis >= 80, "elapsed: " + elapsedMillis);
+
+        // the second board is idle and answers straight after its own latency
+        start = System.nanoTime();
+        qrng.getRandom(new int[1], 1, 1);
+        assertTrue((System.nanoTime() - start) / 1000000 < 80);
+    }
+}
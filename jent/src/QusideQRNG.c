@@ -2,37 +2,215 @@
 #include "com_quside_QusideQRNG.h"
 #include "quside_QRNG_minimal.h"
 #include <stdlib.h>
+#include <string.h>
+#include <pthread.h>
 
 // #define QRNG_DEBUG
 
+#define QRNG_BLOCK_WORDS 128
+#define QRNG_BLOCK_BYTES (QRNG_BLOCK_WORDS * 4)
+#define QRNG_MAX_BOARDS 16
+
+// Most bytes read from the device while a Java array is pinned. The GC is held
+// off for as long as a critical region is open, so a large request is read in
+// pieces of this size, each in its own region, rather than all at once.
+#define QRNG_CRITICAL_BYTES (64 * 1024)
+
+// Unused tail of the last block each thread read from each board. The device
+// always delivers whole blocks, small requests are sliced out of them here so
+// the rest of the block is not thrown away. Every byte is handed out once and
+// zeroized as it leaves the block.
+typedef struct {
+    uint32_t block[QRNG_MAX_BOARDS][QRNG_BLOCK_WORDS];
+    size_t used[QRNG_MAX_BOARDS];
+} qrng_scratch;
+
+static pthread_key_t scratch_key;
+static pthread_once_t scratch_once = PTHREAD_ONCE_INIT;
+static int scratch_key_ok;
+
+// Zeroize a buffer in a way the compiler can not elide.
+static void secure_zero(void *p, size_t len) {
+    volatile uint8_t *v = (volatile uint8_t *)p;
+    while (len--) {
+        *v++ = 0;
+    }
+}
+
+static void scratch_release(void *p) {
+    secure_zero(p, sizeof(qrng_scratch));
+    free(p);
+}
+
+static void scratch_key_init(void) {
+    scratch_key_ok = pthread_key_create(&scratch_key, scratch_release) == 0;
+}
+
+// Per-thread scratch, allocated on the first call from a thread and released
+// when it exits. Returns NULL if none can be set up.
+static qrng_scratch *get_scratch(void) {
+    pthread_once(&scratch_once, scratch_key_init);
+    if (!scratch_key_ok) {
+        return NULL;
+    }
+
+    qrng_scratch *s = (qrng_scratch *)pthread_getspecific(scratch_key);
+    if (s == NULL) {
+        s = (qrng_scratch *)calloc(1, sizeof(qrng_scratch));
+        if (s == NULL) {
+            return NULL;
+        }
+        for (int i = 0; i < QRNG_MAX_BOARDS; i++) {
+            s->used[i] = QRNG_BLOCK_BYTES;
+        }
+        if (pthread_setspecific(scratch_key, s) != 0) {
+            free(s);
+            return NULL;
+        }
+    }
+    return s;
+}
+
+// Fill len bytes at dst with random data. The thread's leftover block is used
+// first, whole aligned runs of at least one block are then read straight into
+// dst and any tail is sliced from a fresh block whose remainder is kept.
+static int fill_bytes(uint8_t *dst, size_t len, uint16_t devInd) {
+    uint32_t stack_block[QRNG_BLOCK_WORDS];
+    qrng_scratch *s = (devInd < QRNG_MAX_BOARDS) ? get_scratch() : NULL;
+    uint8_t *block = s ? (uint8_t *)s->block[devInd] : (uint8_t *)stack_block;
+    size_t used = s ? s->used[devInd] : QRNG_BLOCK_BYTES;
+    int ret = 0;
+
+    size_t n = QRNG_BLOCK_BYTES - used;
+    if (n > len) {
+        n = len;
+    }
+    memcpy(dst, block + used, n);
+    secure_zero(block + used, n);
+    used += n;
+    dst += n;
+    len -= n;
+
+    size_t whole = len & ~(size_t)3;
+    if (whole >= QRNG_BLOCK_BYTES && ((uintptr_t)dst & 3) == 0) {
+        ret = get_random((uint32_t *)dst, whole, devInd);
+        if (ret == 0) {
+            dst += whole;
+            len -= whole;
+        }
+    }
+
+    while (ret == 0 && len > 0) {
+        ret = get_random((uint32_t *)block, QRNG_BLOCK_BYTES, devInd);
+        if (ret != 0) {
+            secure_zero(block, QRNG_BLOCK_BYTES);
+            used = QRNG_BLOCK_BYTES;
+            break;
+        }
+        n = len < QRNG_BLOCK_BYTES ? len : QRNG_BLOCK_BYTES;
+        memcpy(dst, block, n);
+        secure_zero(block, n);
+        used = n;
+        dst += n;
+        len -= n;
+    }
+
+    if (s) {
+        s->used[devInd] = used;
+    } else {
+        secure_zero(stack_block, sizeof(stack_block));
+    }
+    return ret;
+}
+
+// As fill_bytes, for whole words. A partly used word left over by a byte
+// request is skipped so words never straddle two requests.
+static int fill_words(uint32_t *dst, size_t count, uint16_t devInd) {
+    qrng_scratch *s = (devInd < QRNG_MAX_BOARDS) ? get_scratch() : NULL;
+    if (s) {
+        size_t used = s->used[devInd];
+        size_t aligned = (used + 3) & ~(size_t)3;
+        secure_zero((uint8_t *)s->block[devInd] + used, aligned - used);
+        s->used[devInd] = aligned;
+    }
+    return fill_bytes((uint8_t *)dst, count * 4, devInd);
+}
+
 JNIEXPORT jint JNICALL Java_com_quside_QusideQRNG_findBoards(JNIEnv *env, jobject obj) {
     return find_boards();
 }
 
 JNIEXPORT jint JNICALL Java_com_quside_QusideQRNG_getRandom(JNIEnv *env, jobject obj, jintArray mem_slot, jint Nuint32, jint devInd) {
-    jint *c_mem_slot = (*env)->GetIntArrayElements(env, mem_slot, 0);
-
-    int ret;
-
-    if(Nuint32 < 128){
-        // Build an array of 128 uint32_t
-        uint32_t *c_mem_slot_128 = (uint32_t *)malloc(128 * sizeof(uint32_t));
-        // Get random numbers
-        ret = get_random(c_mem_slot_128, 128 * 4, (uint16_t)devInd);
-        // Copy the first Nuint32 values
-        for(int i = 0; i < Nuint32; i++){
-            c_mem_slot[i] = c_mem_slot_128[i];
+    jsize size = (*env)->GetArrayLength(env, mem_slot);
+    if (Nuint32 < 0 || Nuint32 > size) {
+        jclass ex = (*env)->FindClass(env, "java/lang/ArrayIndexOutOfBoundsException");
+        (*env)->ThrowNew(env, ex, "word count outside of array");
+        return -1;
+    }
+    if (Nuint32 == 0) {
+        return 0;
+    }
+
+    int ret = 0;
+    jint n;
+    for (jint pos = 0; ret == 0 && pos < Nuint32; pos += n) {
+        n = Nuint32 - pos < QRNG_CRITICAL_BYTES / 4 ? Nuint32 - pos : QRNG_CRITICAL_BYTES / 4;
+
+        // No JNI calls are allowed until the array is released again.
+        uint32_t *c_mem_slot = (uint32_t *)(*env)->GetPrimitiveArrayCritical(env, mem_slot, NULL);
+        if (c_mem_slot == NULL) {
+            return -1;
         }
-        free(c_mem_slot_128);
+        ret = fill_words(c_mem_slot + pos, (size_t)n, (uint16_t)devInd);
+        (*env)->ReleasePrimitiveArrayCritical(env, mem_slot, c_mem_slot, 0);
     }
-    else {
-        ret = get_random(c_mem_slot, (size_t)Nuint32 * 4, (uint16_t)devInd);
+    return ret;
+}
+
+JNIEXPORT jint JNICALL Java_com_quside_QusideQRNG_getRandomBytes(JNIEnv *env, jobject obj, jbyteArray dest, jint off, jint len, jint devInd) {
+    jsize size = (*env)->GetArrayLength(env, dest);
+    if (off < 0 || len < 0 || off > size - len) {
+        jclass ex = (*env)->FindClass(env, "java/lang/ArrayIndexOutOfBoundsException");
+        (*env)->ThrowNew(env, ex, "offset/length outside of array");
+        return -1;
     }
+    if (len == 0) {
+        return 0;
+    }
+
+    int ret = 0;
+    jint n;
+    for (jint pos = 0; ret == 0 && pos < len; pos += n) {
+        n = len - pos < QRNG_CRITICAL_BYTES ? len - pos : QRNG_CRITICAL_BYTES;
 
-    (*env)->ReleaseIntArrayElements(env, mem_slot, c_mem_slot, 0);
+        // No JNI calls are allowed until the array is released again.
+        uint8_t *c_dest = (uint8_t *)(*env)->GetPrimitiveArrayCritical(env, dest, NULL);
+        if (c_dest == NULL) {
+            return -1;
+        }
+        ret = fill_bytes(c_dest + off + pos, (size_t)n, (uint16_t)devInd);
+        (*env)->ReleasePrimitiveArrayCritical(env, dest, c_dest, 0);
+    }
     return ret;
 }
 
+JNIEXPORT jint JNICALL Java_com_quside_QusideQRNG_getRandomBuffer(JNIEnv *env, jobject obj, jobject dest, jint off, jint len, jint devInd) {
+    uint8_t *c_dest = (uint8_t *)(*env)->GetDirectBufferAddress(env, dest);
+    if (c_dest == NULL) {
+        jclass ex = (*env)->FindClass(env, "java/lang/IllegalArgumentException");
+        (*env)->ThrowNew(env, ex, "buffer is not direct");
+        return -1;
+    }
+    jlong size = (*env)->GetDirectBufferCapacity(env, dest);
+    if (off < 0 || len < 0 || off > size - len) {
+        jclass ex = (*env)->FindClass(env, "java/lang/IndexOutOfBoundsException");
+        (*env)->ThrowNew(env, ex, "offset/length outside of buffer");
+        return -1;
+    }
+
+    return fill_bytes(c_dest + off, (size_t)len, (uint16_t)devInd);
+}
+
 JNIEXPORT jint JNICALL Java_com_quside_QusideQRNG_qualityQFactor(JNIEnv *env, jobject obj, jint devInd, jfloatArray qFactor) {
     jfloat *c_qFactor = (*env)->GetFloatArrayElements(env, qFactor, 0);
     int ret = quality_Qfactor((uint16_t)devInd, c_qFactor);
@@ -23,6 +23,22 @@ JNIEXPORT jint JNICALL Java_com_quside_QusideQRNG_findBoards
 JNIEXPORT jint JNICALL Java_com_quside_QusideQRNG_getRandom
   (JNIEnv *, jobject, jintArray, jint, jint);
 
+/*
+ * Class:     com_quside_QusideQRNG
+ * Method:    getRandomBytes
+ * Signature: ([BIII)I
+ */
+JNIEXPORT jint JNICALL Java_com_quside_QusideQRNG_getRandomBytes
+  (JNIEnv *, jobject, jbyteArray, jint, jint, jint);
+
+/*
+ * Class:     com_quside_QusideQRNG
+ * Method:    getRandomBuffer
+ * Signature: (Ljava/nio/ByteBuffer;III)I
+ */
+JNIEXPORT jint JNICALL Java_com_quside_QusideQRNG_getRandomBuffer
+  (JNIEnv *, jobject, jobject, jint, jint, jint);
+
 /*
  * Class:     com_quside_QusideQRNG
  * Method:    getBoards